@@ -0,0 +1,123 @@
+package com.kyriba.parser.benchmark;
+
+import com.kyriba.parser.core.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting of grouping keys and merging of partial results.
+ * <p>
+ * <p>Keys are built before the measurement. {@link HashMap} of {@link GroupingKey} is the baseline.</p>
+ *
+ * @author VMyakushin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+    private static final int LINES_COUNT = 100000;
+    private static final int PARTS_COUNT = 4;
+    private ParseOptions m_options;
+    private GroupingKey[] m_keys;
+    private long[] m_packedKeys;
+    private ParsingResults[] m_parts;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.configure();
+        m_options = BenchmarkData.createOptions();
+        List<String> lines = BenchmarkData.generateLines(LINES_COUNT);
+        ParsingResults results = new ParsingResults(m_options.getGroupingConditions());
+        GroupingKeyEncoder encoder = results.getEncoder();
+        LineExtractor extractor = new LineExtractor();
+        m_keys = new GroupingKey[LINES_COUNT];
+        m_packedKeys = new long[LINES_COUNT];
+        m_parts = new ParsingResults[PARTS_COUNT];
+        for (int i = 0; i < PARTS_COUNT; i++) {
+            m_parts[i] = new ParsingResults(m_options.getGroupingConditions());
+        }
+        for (int i = 0; i < LINES_COUNT; i++) {
+            extractor.extract(lines.get(i));
+            GroupingKey key = new GroupingKey();
+            long packedKey = 0;
+            for (GroupBy condition : m_options.getGroupingConditions()) {
+                condition.processKey(extractor, key);
+                String value = condition.getValue(extractor);
+                if (value != null) {
+                    packedKey = encoder.encode(packedKey, condition, value);
+                }
+            }
+            m_keys[i] = key;
+            m_packedKeys[i] = packedKey;
+            if (!key.isEmpty()) {
+                m_parts[i % PARTS_COUNT].add(key);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public Map<GroupingKey, Long> hashMap() {
+        Map<GroupingKey, Long> counts = new HashMap<>();
+        for (GroupingKey key : m_keys) {
+            if (!key.isEmpty()) {
+                counts.merge(key, 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public ParsingResults groupingKeys() {
+        ParsingResults results = new ParsingResults(m_options.getGroupingConditions());
+        for (GroupingKey key : m_keys) {
+            if (!key.isEmpty()) {
+                results.add(key);
+            }
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public LongCounterTable packedKeys() {
+        LongCounterTable table = new LongCounterTable();
+        for (long key : m_packedKeys) {
+            if (key != 0) {
+                table.increment(key, 1);
+            }
+        }
+        return table;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public OffHeapCounterTable offHeapKeys() {
+        OffHeapCounterTable table = new OffHeapCounterTable();
+        for (long key : m_packedKeys) {
+            if (key != 0) {
+                table.increment(key, 1);
+            }
+        }
+        table.release();
+        return table;
+    }
+
+    @Benchmark
+    public ParsingResults merge() {
+        ParsingResults results = new ParsingResults(m_options.getGroupingConditions());
+        for (ParsingResults part : m_parts) {
+            results.merge(part);
+        }
+        return results;
+    }
+}
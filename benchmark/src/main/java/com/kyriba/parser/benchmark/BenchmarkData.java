@@ -0,0 +1,122 @@
+package com.kyriba.parser.benchmark;
+
+import com.kyriba.parser.core.Configuration;
+import com.kyriba.parser.core.Filter;
+import com.kyriba.parser.core.GroupBy;
+import com.kyriba.parser.core.ParseOptions;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generated inputs and common setup of benchmarks.
+ * <p>
+ * <p>Configuration is the default one, so benchmarks don't depend on local config files.
+ * Inputs are generated with a fixed seed, so every run parses the same lines.</p>
+ *
+ * @author VMyakushin
+ */
+final class BenchmarkData {
+    static final int USERS_COUNT = 1000;
+    private static final Logger toolLogger = Logger.getLogger("com.kyriba.parser.core");
+    private static final long SEED = 42;
+    private static final String[] MESSAGES = {"Login succeeded", "Error: connection reset", "Payment accepted",
+            "Session expired", "Error: timeout while waiting for response", "Report generated"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Load default configuration and compile patterns of filters.
+     * Informational messages of the tool are disabled, they are written on every parse.
+     *
+     * @throws IOException if configuration cannot be created.
+     */
+    static void configure() throws IOException {
+        File config = File.createTempFile("benchmark", ".cfg");
+        config.delete();
+        config.deleteOnExit();
+        Configuration.INSTANCE.load(config.getPath());
+        Filter.compileAll();
+        toolLogger.setLevel(Level.WARNING);
+    }
+
+    /**
+     * @return options with all filters and all grouping conditions.
+     */
+    static ParseOptions createOptions() {
+        ParseOptions options = new ParseOptions();
+        options.setUsernameFilter("user7");
+        options.setDateFilter("01/01/2015", "31/12/2025", Configuration.INSTANCE.getDateFormat());
+        options.setMessageFilter("Error");
+        for (GroupBy condition : GroupBy.values()) {
+            options.addGroupingCondition(condition);
+        }
+        return options;
+    }
+
+    /**
+     * Generate log lines in the default format. Every tenth line is a stack trace line without date and username.
+     *
+     * @param count number of lines.
+     * @return lines.
+     */
+    static List<String> generateLines(final int count) {
+        Random random = new Random(SEED);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i % 10 == 9) {
+                lines.add("    at com.example.Service.call(Service.java:" + random.nextInt(500) + ")");
+            } else {
+                lines.add(String.format("%02d/%02d/%04d [user%d]: %s",
+                        1 + random.nextInt(28), 1 + random.nextInt(12), 2015 + random.nextInt(10),
+                        random.nextInt(USERS_COUNT), MESSAGES[random.nextInt(MESSAGES.length)]));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Write generated lines to files of a new temporary directory.
+     *
+     * @param filesCount    number of files.
+     * @param linesPerFile  number of lines in every file.
+     * @return directory with files.
+     * @throws IOException in case of writing errors.
+     */
+    static File generateFiles(final int filesCount, final int linesPerFile) throws IOException {
+        File directory = Files.createTempDirectory("benchmark-logs").toFile();
+        List<String> lines = generateLines(linesPerFile);
+        for (int i = 0; i < filesCount; i++) {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(directory, "app" + i + ".log")), StandardCharsets.UTF_8))) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Delete directory with its files.
+     *
+     * @param directory directory without subdirectories.
+     */
+    static void delete(final File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,72 @@
+package com.kyriba.parser.benchmark;
+
+import com.kyriba.parser.core.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Per-line filter matching.
+ * <p>
+ * <p>Compares matching with a new {@link Matcher} for every filter of every line
+ * and matching with fields extracted once per line by {@link LineExtractor}.</p>
+ *
+ * @author VMyakushin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+    private static final int LINES_COUNT = 10000;
+    private List<String> m_lines;
+    private ParseOptions m_options;
+    private LineExtractor m_extractor;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.configure();
+        m_lines = BenchmarkData.generateLines(LINES_COUNT);
+        m_options = BenchmarkData.createOptions();
+        m_extractor = new LineExtractor();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void perFilterMatchers(final Blackhole blackhole) {
+        for (String line : m_lines) {
+            boolean matched = true;
+            for (Filter filter : m_options.getFilters()) {
+                Matcher matcher = filter.getPattern().matcher(line);
+                if (!(matcher.find() && filter.match(matcher.group(filter.getPatternGroupName()), m_options.getFilterValue(filter)))) {
+                    matched = false;
+                    break;
+                }
+            }
+            blackhole.consume(matched);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void lineExtractor(final Blackhole blackhole) {
+        for (String line : m_lines) {
+            m_extractor.extract(line);
+            boolean matched = true;
+            for (Filter filter : m_options.getFilters()) {
+                String value = m_extractor.getField(filter);
+                if (value == null || !filter.match(value, m_options)) {
+                    matched = false;
+                    break;
+                }
+            }
+            blackhole.consume(matched);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.kyriba.parser.benchmark;
+
+import com.kyriba.parser.core.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building of grouping keys for lines with all grouping conditions.
+ * <p>
+ * <p>Compares {@link GroupingKey} map and packed key of {@link GroupingKeyEncoder}.
+ * Fields are extracted from lines before the measurement.</p>
+ *
+ * @author VMyakushin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupingKeyBenchmark {
+    private static final int LINES_COUNT = 1000;
+    private LineExtractor[] m_extractors;
+    private ParseOptions m_options;
+    private GroupingKeyEncoder m_encoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.configure();
+        m_options = BenchmarkData.createOptions();
+        m_encoder = new GroupingKeyEncoder(m_options.getGroupingConditions());
+        List<String> lines = BenchmarkData.generateLines(LINES_COUNT);
+        m_extractors = new LineExtractor[LINES_COUNT];
+        for (int i = 0; i < LINES_COUNT; i++) {
+            m_extractors[i] = new LineExtractor();
+            m_extractors[i].extract(lines.get(i));
+            for (Filter filter : Filter.values()) {
+                m_extractors[i].getField(filter);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void groupingKey(final Blackhole blackhole) {
+        for (LineExtractor extractor : m_extractors) {
+            GroupingKey key = new GroupingKey();
+            for (GroupBy condition : m_options.getGroupingConditions()) {
+                condition.processKey(extractor, key);
+            }
+            blackhole.consume(key);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void packedKey(final Blackhole blackhole) {
+        for (LineExtractor extractor : m_extractors) {
+            long key = 0;
+            for (GroupBy condition : m_options.getGroupingConditions()) {
+                String value = condition.getValue(extractor);
+                if (value != null) {
+                    key = m_encoder.encode(key, condition, value);
+                }
+            }
+            blackhole.consume(key);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.kyriba.parser.benchmark;
+
+import com.kyriba.parser.core.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of fields by patterns and by {@link LineLayout fixed layout}.
+ * <p>
+ * <p>Empty layout means patterns only. Lines are kept as bytes, as parsers read them.
+ * Stack trace lines don't fit the layout and are extracted by patterns in both modes.</p>
+ *
+ * @author VMyakushin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark {
+    private static final int LINES_COUNT = 10000;
+    private static final Filter[] FIELDS = Filter.values();
+    @Param({"", "{date:10} [{username}]: {message}"})
+    public String m_layout;
+    private byte[][] m_lines;
+    private ParseOptions m_options;
+    private LineExtractor m_extractor;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.configure();
+        LineLayout.INSTANCE.setLayout(m_layout);
+        List<String> lines = BenchmarkData.generateLines(LINES_COUNT);
+        m_lines = new byte[LINES_COUNT][];
+        for (int i = 0; i < LINES_COUNT; i++) {
+            m_lines[i] = lines.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        m_options = BenchmarkData.createOptions();
+        m_extractor = new LineExtractor();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void allFields(final Blackhole blackhole) {
+        for (byte[] line : m_lines) {
+            m_extractor.extract(line, 0, line.length);
+            for (Filter field : FIELDS) {
+                blackhole.consume(m_extractor.getField(field));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void filters(final Blackhole blackhole) {
+        for (byte[] line : m_lines) {
+            m_extractor.extract(line, 0, line.length);
+            boolean matched = true;
+            for (Filter filter : m_options.getFilters()) {
+                if (!filter.match(m_extractor, m_options)) {
+                    matched = false;
+                    break;
+                }
+            }
+            blackhole.consume(matched);
+        }
+    }
+}
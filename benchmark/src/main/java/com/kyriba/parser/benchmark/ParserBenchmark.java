@@ -0,0 +1,67 @@
+package com.kyriba.parser.benchmark;
+
+import com.kyriba.parser.core.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link Parser#parse(ParseOptions)} of generated files with every parser implementation.
+ *
+ * @author VMyakushin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ParserBenchmark {
+    private static final int FILES_COUNT = 4;
+    private static final int LINES_PER_FILE = 250000;
+
+    @Param({"basic", "parallel", "mapped"})
+    public String parser;
+
+    private File m_input;
+    private File m_output;
+    private Parser m_parser;
+    private ParseOptions m_options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.configure();
+        m_input = BenchmarkData.generateFiles(FILES_COUNT, LINES_PER_FILE);
+        m_output = File.createTempFile("benchmark", ".log");
+        m_options = new ParseOptions();
+        m_options.setInputPath(m_input.getPath());
+        m_options.setOutputPath(m_output.getPath());
+        m_options.setMessageFilter("Error");
+        m_options.addGroupingCondition(GroupBy.USERNAME);
+        m_options.addGroupingCondition(GroupBy.MONTH);
+        int threads = Runtime.getRuntime().availableProcessors();
+        switch (parser) {
+            case "parallel":
+                m_parser = new ParserParallelImpl(threads);
+                break;
+            case "mapped":
+                m_parser = new ParserMappedImpl(threads, 8 * 1024 * 1024);
+                break;
+            default:
+                m_parser = new ParserBasicImpl();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.delete(m_input);
+        m_output.delete();
+    }
+
+    @Benchmark
+    public ParsingResults parse() throws IOException {
+        return m_parser.parse(m_options);
+    }
+}
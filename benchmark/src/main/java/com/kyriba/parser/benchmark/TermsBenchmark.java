@@ -0,0 +1,114 @@
+package com.kyriba.parser.benchmark;
+
+import com.kyriba.parser.core.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching of a field against a list of filter terms.
+ * <p>
+ * <p>Compares a check of every term one by one, as separate single-term filters do,
+ * with a single lookup by {@link TermMatcher} of the filter. MESSAGE terms are searched by an automaton,
+ * USERNAME terms are looked up in a hash set. Lines are kept as bytes, as parsers read them.</p>
+ *
+ * @author VMyakushin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TermsBenchmark {
+    private static final int LINES_COUNT = 10000;
+    @Param({"10", "200"})
+    public int m_termsCount;
+    private byte[][] m_lines;
+    private List<String> m_messageTerms;
+    private List<String> m_usernameTerms;
+    private TermMatcher m_messageMatcher;
+    private TermMatcher m_usernameMatcher;
+    private int[] m_found;
+    private boolean[] m_seen;
+    private LineExtractor m_extractor;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.configure();
+        List<String> lines = BenchmarkData.generateLines(LINES_COUNT);
+        m_lines = new byte[LINES_COUNT][];
+        for (int i = 0; i < LINES_COUNT; i++) {
+            m_lines[i] = lines.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        m_messageTerms = new ArrayList<>();
+        m_usernameTerms = new ArrayList<>();
+        m_messageTerms.add("timeout");
+        m_usernameTerms.add("user7");
+        for (int i = 1; i < m_termsCount; i++) {
+            m_messageTerms.add("Error: code " + i);
+            m_usernameTerms.add("user" + (i * BenchmarkData.USERS_COUNT / m_termsCount + 1));
+        }
+        ParseOptions options = new ParseOptions();
+        options.setMessageFilter(m_messageTerms);
+        options.setUsernameFilter(m_usernameTerms);
+        m_messageMatcher = options.getTermMatcher(Filter.MESSAGE);
+        m_usernameMatcher = options.getTermMatcher(Filter.USERNAME);
+        m_found = new int[m_termsCount];
+        m_seen = new boolean[m_termsCount];
+        m_extractor = new LineExtractor();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void messageTermByTerm(final Blackhole blackhole) {
+        for (byte[] line : m_lines) {
+            m_extractor.extract(line, 0, line.length);
+            int count = 0;
+            for (String term : m_messageTerms) {
+                if (m_extractor.fieldContains(Filter.MESSAGE, term)) {
+                    count++;
+                }
+            }
+            blackhole.consume(count);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void messageAutomaton(final Blackhole blackhole) {
+        for (byte[] line : m_lines) {
+            m_extractor.extract(line, 0, line.length);
+            blackhole.consume(m_extractor.matchTerms(Filter.MESSAGE, m_messageMatcher, m_found, m_seen));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void usernameTermByTerm(final Blackhole blackhole) {
+        for (byte[] line : m_lines) {
+            m_extractor.extract(line, 0, line.length);
+            int count = 0;
+            for (String term : m_usernameTerms) {
+                if (m_extractor.isFieldEqual(Filter.USERNAME, term)) {
+                    count++;
+                }
+            }
+            blackhole.consume(count);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void usernameHashSet(final Blackhole blackhole) {
+        for (byte[] line : m_lines) {
+            m_extractor.extract(line, 0, line.length);
+            blackhole.consume(m_extractor.matchTerms(Filter.USERNAME, m_usernameMatcher, m_found, m_seen));
+        }
+    }
+}
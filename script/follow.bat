@@ -0,0 +1,12 @@
+@echo off
+SET JAVA_HOME=
+
+SET OPTIONS=Djava.util.logging.config.file=config\logging.cfg
+
+SET CP=.
+SET CP=%CP%;lib\*
+
+REM Usage: follow.bat <path to log files> [window minutes]
+%JAVA_HOME%java -%OPTIONS% -cp %CP% com.kyriba.parser.application.FollowLauncher config\config.cfg %1 %2
+
+pause
\ No newline at end of file
@@ -0,0 +1,12 @@
+@echo off
+SET JAVA_HOME=
+
+SET OPTIONS=Djava.util.logging.config.file=config\logging.cfg
+
+SET CP=.
+SET CP=%CP%;lib\*
+
+REM Usage: generate.bat <output directory> [size=<MB>] [files=<count>] [users=<count>] [skew=<exponent>] [from=<date>] [days=<count>] [seed=<number>]
+%JAVA_HOME%java -%OPTIONS% -cp %CP% com.kyriba.parser.application.GeneratorLauncher config\config.cfg %*
+
+pause
\ No newline at end of file
@@ -0,0 +1,12 @@
+@echo off
+SET JAVA_HOME=
+
+SET OPTIONS=Djava.util.logging.config.file=config\logging.cfg
+
+SET CP=.
+SET CP=%CP%;lib\*
+
+REM Usage: index.bat <path to log files>
+%JAVA_HOME%java -%OPTIONS% -cp %CP% com.kyriba.parser.application.IndexLauncher config\config.cfg %1
+
+pause
\ No newline at end of file
@@ -0,0 +1,12 @@
+@echo off
+SET JAVA_HOME=
+
+SET OPTIONS=Djava.util.logging.config.file=config\logging.cfg
+
+SET CP=.
+SET CP=%CP%;lib\*
+
+REM Usage: query.bat input=<path> [username=<name>] [date.from=<date> date.to=<date>] [message=<text>] group=<conditions>
+REM        query.bat input=<path> <query> ; <query> ...   (batch of queries parsed in a single pass)
+REM        query.bat shutdown
+%JAVA_HOME%java -%OPTIONS% -cp %CP% com.kyriba.parser.application.QueryLauncher config\config.cfg %*
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.kyriba.parser.application;
 import com.kyriba.parser.controller.ConsoleController;
 import com.kyriba.parser.core.Configuration;
 import com.kyriba.parser.core.Filter;
+import com.kyriba.parser.core.ParserMetrics;
 import com.kyriba.parser.core.ResponseMessage;
 
 import java.io.IOException;
@@ -32,6 +33,11 @@ public class ConsoleLauncher {
             Filter.compileAll();
             logger.log(Level.INFO, "Patterns for all filters was compiled.");
 
+            if (Configuration.INSTANCE.isMetricsEnabled()) {
+                ParserMetrics.INSTANCE.enable();
+                logger.log(Level.INFO, "Parser metrics were enabled.");
+            }
+
             ConsoleController console = new ConsoleController(System.out, System.in);
             console.start();
         } catch (PatternSyntaxException e) {
@@ -0,0 +1,51 @@
+package com.kyriba.parser.application;
+
+import com.kyriba.parser.controller.DaemonController;
+import com.kyriba.parser.core.Configuration;
+import com.kyriba.parser.core.Filter;
+import com.kyriba.parser.core.ParserMetrics;
+import com.kyriba.parser.core.ResponseMessage;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Application launcher class that starts resident daemon serving queries of {@link QueryLauncher}.
+ * <p>
+ * <p>Argument: path to config file. Daemon listens on the port specified by configuration.</p>
+ *
+ * @author VMyakushin
+ */
+public class DaemonLauncher {
+    private static final Logger logger = Logger.getLogger(DaemonLauncher.class.getName());
+
+    public static void main(String[] args) throws IOException {
+        try {
+            if (args.length < 1) {
+                throw new IOException("Path to config file is not defined");
+            }
+            Configuration.INSTANCE.load(args[0]);
+            logger.log(Level.INFO, "Configuration was successfully loaded from " + args[0]);
+
+            Filter.compileAll();
+            logger.log(Level.INFO, "Patterns for all filters was compiled.");
+
+            if (Configuration.INSTANCE.isMetricsEnabled()) {
+                ParserMetrics.INSTANCE.enable();
+                logger.log(Level.INFO, "Parser metrics were enabled.");
+            }
+
+            new DaemonController(Configuration.INSTANCE.getDaemonPort()).start();
+        } catch (PatternSyntaxException e) {
+            ResponseMessage message = ResponseMessage.WRONG_REGULAR_EXPRESSION;
+            System.out.println(message);
+            logger.log(Level.SEVERE, message.toString(), e);
+        } catch (IOException e) {
+            ResponseMessage message = ResponseMessage.UNKNOWN_ERROR;
+            System.out.println(message);
+            logger.log(Level.SEVERE, message.toString(), e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.kyriba.parser.application;
+
+import com.kyriba.parser.core.*;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Application launcher class that follows growing log files with {@link LogFollower}.
+ * <p>
+ * <p>Arguments: path to config file, path to log files (file or directory) and optional length of rolling window
+ * in minutes. Only lines appended after start are parsed. Matched lines are written to the output file,
+ * number of filtered records and the most frequent usernames of the window are printed periodically.
+ * ENTER stops following.</p>
+ *
+ * @author VMyakushin
+ */
+public class FollowLauncher {
+    private static final Logger logger = Logger.getLogger(FollowLauncher.class.getName());
+    private static final int DEFAULT_WINDOW_MINUTES = 5;
+    private static final int REPORT_INTERVAL_SECONDS = 10;
+    private static final int REPORT_TOP_COUNT = 10;
+    private static final String TOTAL_FILTERED_MESSAGE = "Total records was filtered: %s%n";
+    private static final String WINDOW_MESSAGE = "The most frequent usernames of the last %d minutes:%n";
+    private static final String RESULT_TABLE_COUNT_COLUMN = "%-10s|";
+
+    public static void main(String[] args) throws IOException {
+        try {
+            if (args.length < 2) {
+                throw new IOException("Path to config file and path to log files must be defined");
+            }
+            Configuration.INSTANCE.load(args[0]);
+            logger.log(Level.INFO, "Configuration was successfully loaded from " + args[0]);
+
+            Filter.compileAll();
+            logger.log(Level.INFO, "Patterns for all filters was compiled.");
+
+            int windowMinutes = args.length > 2 ? parseWindowMinutes(args[2]) : DEFAULT_WINDOW_MINUTES;
+            if (windowMinutes < 1) {
+                System.out.println(ResponseMessage.WRONG_WINDOW_LENGTH);
+                return;
+            }
+            ParseOptions options = new ParseOptions();
+            ResponseMessage message = options.setInputPath(args[1]);
+            if (message == ResponseMessage.SUCCESS) {
+                message = options.setOutputPath(Configuration.INSTANCE.getOutputPath());
+            }
+            if (message != ResponseMessage.SUCCESS) {
+                System.out.println(message);
+                return;
+            }
+            options.addGroupingCondition(GroupBy.DAY);
+
+            RollingWindowCounter window = new RollingWindowCounter(GroupBy.USERNAME, windowMinutes);
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+            try (LogFollower follower = new LogFollower(options, false)) {
+                follower.addRollingWindow(window);
+                Thread thread = new Thread(follower, "log-follower");
+                thread.setDaemon(true);
+                thread.start();
+                reporter.scheduleWithFixedDelay(() -> report(follower, window, windowMinutes),
+                        REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+                System.out.println("Following " + args[1] + ". Press ENTER to stop.");
+                System.in.read();
+            } finally {
+                reporter.shutdownNow();
+            }
+        } catch (PatternSyntaxException e) {
+            ResponseMessage message = ResponseMessage.WRONG_REGULAR_EXPRESSION;
+            System.out.println(message);
+            logger.log(Level.SEVERE, message.toString(), e);
+        } catch (IOException e) {
+            ResponseMessage message = ResponseMessage.UNKNOWN_ERROR;
+            System.out.println(message);
+            logger.log(Level.SEVERE, message.toString(), e);
+        }
+    }
+
+    private static int parseWindowMinutes(final String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void report(final LogFollower follower, final RollingWindowCounter window, final int windowMinutes) {
+        ParsingResults results = follower.getResults();
+        try {
+            System.out.println();
+            System.out.printf(TOTAL_FILTERED_MESSAGE, results.countFilteredLines());
+        } finally {
+            results.release();
+        }
+        System.out.printf(WINDOW_MESSAGE, windowMinutes);
+        System.out.printf(RESULT_TABLE_COUNT_COLUMN, "COUNT");
+        System.out.println(GroupBy.USERNAME);
+        window.getCounts(System.currentTimeMillis()).entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(REPORT_TOP_COUNT)
+                .forEach(entry -> {
+                    System.out.printf(RESULT_TABLE_COUNT_COLUMN, entry.getValue());
+                    System.out.println(entry.getKey());
+                });
+    }
+}
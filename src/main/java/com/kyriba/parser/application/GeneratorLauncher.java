@@ -0,0 +1,71 @@
+package com.kyriba.parser.application;
+
+import com.kyriba.parser.core.Configuration;
+import com.kyriba.parser.core.LogGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Application launcher class that generates synthetic log files for load testing.
+ * <p>
+ * <p>Arguments: path to config file, output directory and optional settings in {@code key=value} form:
+ * {@code size} (total size in MB), {@code files}, {@code threads}, {@code users}, {@code skew}, {@code vocabulary},
+ * {@code from} (date of the first line in the configured format), {@code days}, {@code stacktraces}
+ * (share of stack trace lines) and {@code seed}. Dates are written with the date format of the configuration.</p>
+ *
+ * @author VMyakushin
+ */
+public class GeneratorLauncher {
+    private static final Logger logger = Logger.getLogger(GeneratorLauncher.class.getName());
+    private static final String SETTING_SEPARATOR = "=";
+
+    public static void main(String[] args) throws IOException {
+        try {
+            if (args.length < 2) {
+                throw new IOException("Path to config file and output directory must be defined");
+            }
+            Configuration.INSTANCE.load(args[0]);
+            logger.log(Level.INFO, "Configuration was successfully loaded from " + args[0]);
+
+            Map<String, String> settings = new HashMap<>();
+            for (int i = 2; i < args.length; i++) {
+                String[] setting = args[i].split(SETTING_SEPARATOR, 2);
+                if (setting.length != 2) {
+                    throw new IllegalArgumentException("Setting must be defined as key=value: " + args[i]);
+                }
+                settings.put(setting[0].trim().toLowerCase(), setting[1].trim());
+            }
+
+            LogGenerator generator = new LogGenerator(Long.parseLong(get(settings, "seed", "42")));
+            generator.setDateFormat(Configuration.INSTANCE.getDateFormatString());
+            generator.setUsersCount(Integer.parseInt(get(settings, "users", "1000")));
+            generator.setSkew(Double.parseDouble(get(settings, "skew", "1.0")));
+            generator.setVocabularySize(Integer.parseInt(get(settings, "vocabulary", "500")));
+            generator.setStackTraceRate(Double.parseDouble(get(settings, "stacktraces", "0.05")));
+            if (settings.containsKey("from")) {
+                generator.setStartDate(Configuration.INSTANCE.getDateFormat().parse(settings.get("from")));
+            }
+            generator.setDaysCount(Integer.parseInt(get(settings, "days", "365")));
+            long size = Long.parseLong(get(settings, "size", "1024")) * 1024 * 1024;
+            int threads = Integer.parseInt(get(settings, "threads", Integer.toString(Configuration.INSTANCE.getThreadsCount())));
+            generator.generate(new File(args[1]), Integer.parseInt(get(settings, "files", "8")), size, threads);
+        } catch (IllegalArgumentException | ParseException e) {
+            System.out.println("Wrong generator settings: " + e.getMessage());
+            logger.log(Level.SEVERE, "Wrong generator settings", e);
+        } catch (IOException e) {
+            System.out.println("Log files cannot be generated: " + e.getMessage());
+            logger.log(Level.SEVERE, "Log files cannot be generated", e);
+        }
+    }
+
+    private static String get(final Map<String, String> settings, final String key, final String defaultValue) {
+        String value = settings.get(key);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,55 @@
+package com.kyriba.parser.application;
+
+import com.kyriba.parser.core.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Application launcher class that builds indexes of log files.
+ * <p>
+ * <p>Arguments: path to config file and path to log files (file or directory).
+ * Indexes are saved to directory specified by configuration.</p>
+ *
+ * @author VMyakushin
+ */
+public class IndexLauncher {
+    private static final Logger logger = Logger.getLogger(IndexLauncher.class.getName());
+
+    public static void main(String[] args) throws IOException {
+        try {
+            if (args.length < 2) {
+                throw new IOException("Path to config file and path to log files must be defined");
+            }
+            Configuration.INSTANCE.load(args[0]);
+            logger.log(Level.INFO, "Configuration was successfully loaded from " + args[0]);
+
+            Filter.compileAll();
+            logger.log(Level.INFO, "Patterns for all filters was compiled.");
+
+            String indexPath = Configuration.INSTANCE.getIndexPath();
+            if (indexPath.isEmpty()) {
+                System.out.println(ResponseMessage.INDEX_PATH_IS_NOT_DEFINED);
+                return;
+            }
+            IndexStore indexes = new IndexStore(new File(indexPath), Configuration.INSTANCE.getIndexBlockSize());
+            for (File file : FileUtils.getFiles(new File(args[1]))) {
+                if (file.isFile() && !ParallelGzipInputStream.isCompressed(file)) {
+                    indexes.build(file);
+                    logger.log(Level.INFO, "Index was built for " + file);
+                }
+            }
+        } catch (PatternSyntaxException e) {
+            ResponseMessage message = ResponseMessage.WRONG_REGULAR_EXPRESSION;
+            System.out.println(message);
+            logger.log(Level.SEVERE, message.toString(), e);
+        } catch (IOException e) {
+            ResponseMessage message = ResponseMessage.UNKNOWN_ERROR;
+            System.out.println(message);
+            logger.log(Level.SEVERE, message.toString(), e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.kyriba.parser.application;
+
+import com.kyriba.parser.core.Configuration;
+import com.kyriba.parser.core.ResponseMessage;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Application launcher class that sends a query to the daemon started by {@link DaemonLauncher} and prints the response.
+ * <p>
+ * <p>Arguments: path to config file and request lines in {@code key=value} form,
+ * e.g. {@code input=logs username=admin group=YEAR,MONTH}. Argument {@code shutdown} stops the daemon.
+ * See {@link com.kyriba.parser.controller.DaemonController} for keys of request and response.</p>
+ *
+ * @author VMyakushin
+ */
+public class QueryLauncher {
+    private static final Logger logger = Logger.getLogger(QueryLauncher.class.getName());
+    private static final String COMMAND_SHUTDOWN = "shutdown";
+
+    public static void main(String[] args) throws IOException {
+        try {
+            if (args.length < 2) {
+                throw new IOException("Path to config file and query must be defined");
+            }
+            Configuration.INSTANCE.load(args[0]);
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Configuration.INSTANCE.getDaemonPort())) {
+                PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+                for (int i = 1; i < args.length; i++) {
+                    writer.println(COMMAND_SHUTDOWN.equalsIgnoreCase(args[i]) ? "command=" + COMMAND_SHUTDOWN : args[i]);
+                }
+                writer.println();
+                writer.flush();
+
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    System.out.println(line);
+                }
+            }
+        } catch (ConnectException e) {
+            ResponseMessage message = ResponseMessage.DAEMON_IS_NOT_AVAILABLE;
+            System.out.println(message);
+            logger.log(Level.SEVERE, message.toString(), e);
+        } catch (IOException e) {
+            ResponseMessage message = ResponseMessage.UNKNOWN_ERROR;
+            System.out.println(message);
+            logger.log(Level.SEVERE, message.toString(), e);
+        }
+    }
+}
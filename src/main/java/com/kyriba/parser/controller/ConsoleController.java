@@ -3,7 +3,6 @@ package com.kyriba.parser.controller;
 import com.kyriba.parser.core.*;
 
 import java.io.*;
-import java.math.BigInteger;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,6 +18,14 @@ public class ConsoleController {
     private static final String EXIT_MESSAGE = "Press ENTER to exit.";
     private static final String RESULT_TABLE_COLUMN = "%-15s%s";
     private static final String RESULT_TABLE_COUNT_COLUMN = "%-10s|";
+    private static final String ESTIMATED_COUNTS_MESSAGE = "Counts are estimated. ERROR is maximum overestimation of COUNT.%n";
+    private static final String DISTINCT_COUNTS_MESSAGE = "COUNT is estimated number of distinct usernames. Standard error is %.1f%%.%n";
+    private static final String DISTINCT_ANSWER = "DISTINCT";
+    private static final String TERM_HITS_MESSAGE = "%nRecords filtered by every %s value:%n";
+    private static final String TERMS_HINT = " Several values can be separated by " + Constants.FILTER_TERMS_SEPARATOR
+            + ", or type " + Constants.FILTER_TERMS_FILE_PREFIX + " and path to a file with a value per line. Type "
+            + Constants.FILTER_TERMS_ESCAPE + Constants.FILTER_TERMS_SEPARATOR + " or "
+            + Constants.FILTER_TERMS_ESCAPE + Constants.FILTER_TERMS_FILE_PREFIX + " to search these characters.";
     private final PrintStream m_printStream;
     private final InputStream m_inputStream;
 
@@ -53,11 +60,11 @@ public class ConsoleController {
             inputPath(options, br, text);
 
             while (true) {
-                text = "Specify USERNAME filter. Leave line empty to SKIP filter:";
+                text = "Specify USERNAME filter." + TERMS_HINT + " Leave line empty to SKIP filter:";
                 usernameFilter(options, br, text);
                 text = "Specify DATE filter. Leave line empty to SKIP filter,";
                 dateFilter(options, br, text);
-                text = "Specify MESSAGE filter. Leave line empty to SKIP filter:";
+                text = "Specify MESSAGE filter." + TERMS_HINT + " Leave line empty to SKIP filter:";
                 messageFilter(options, br, text);
 
                 ResponseMessage message = options.checkFilterValidity();
@@ -78,43 +85,111 @@ public class ConsoleController {
             }
             groupingMessage.append(System.lineSeparator());
             groupBy(options, br, groupingMessage.toString());
+            if (options.getGroupingConditions().contains(GroupBy.USERNAME)) {
+                text = "Specify number of the most frequent usernames to count in every group."
+                        + " Counts are estimated in fixed memory. Leave line empty to count all usernames exactly:";
+                topCount(options, br, text);
+            } else {
+                text = "Type DISTINCT to count distinct usernames in every group instead of records."
+                        + " Counts are estimated in fixed memory. Leave line empty to count records:";
+                distinctCount(options, br, text);
+            }
 
             logger.log(Level.INFO, "Analysis started with user defined parameters.");
-            Parser parser = new ParserBasicImpl();
+            Parser parser = createParser();
             ParsingResults results;
-            results = parser.parse(options);
+            Closeable progress = reportProgress();
+            try {
+                results = parser.parse(options);
+            } finally {
+                progress.close();
+            }
             logger.log(Level.INFO, "Analysis was completed successful. Number of filtered lines: " + results.countFilteredLines());
 
-            printResults(results, options);
+            try {
+                printResults(results, options);
+            } finally {
+                results.release();
+            }
         } catch (IllegalArgumentException e) {
             ResponseMessage message = ResponseMessage.WRONG_REGULAR_EXPRESSION;
             logger.log(Level.SEVERE, message.toString(), e);
             m_printStream.println(message);
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             ResponseMessage message = ResponseMessage.UNKNOWN_ERROR;
             logger.log(Level.SEVERE, message.toString(), e);
             m_printStream.println(message);
         }
     }
 
+    /**
+     * Create parser defined by configuration.
+     *
+     * @return parser.
+     * @throws IOException if storage of checkpoints or indexes cannot be created.
+     */
+    static Parser createParser() throws IOException {
+        String checkpointPath = Configuration.INSTANCE.getCheckpointPath();
+        if (!checkpointPath.isEmpty()) {
+            return new ParserIncrementalImpl(Configuration.INSTANCE.getThreadsCount(), new CheckpointStore(new File(checkpointPath)));
+        }
+        String indexPath = Configuration.INSTANCE.getIndexPath();
+        IndexStore indexes = indexPath.isEmpty() ? null : new IndexStore(new File(indexPath));
+        return new ParserMappedImpl(Configuration.INSTANCE.getThreadsCount(), Configuration.INSTANCE.getChunkSize(), indexes);
+    }
+
+    private Closeable reportProgress() {
+        int interval = Configuration.INSTANCE.getProgressInterval();
+        if (!ParserMetrics.INSTANCE.isEnabled() || interval == 0) {
+            return () -> {
+            };
+        }
+        return ParserMetrics.INSTANCE.reportProgress(m_printStream, interval);
+    }
+
     private void printResults(ParsingResults results, ParseOptions options) {
         m_printStream.println();
         m_printStream.printf(TOTAL_FILTERED_MESSAGE, results.countFilteredLines());
+        boolean estimated = options.getAggregation() == Aggregation.TOP_USERNAMES;
+        if (estimated) {
+            m_printStream.printf(ESTIMATED_COUNTS_MESSAGE);
+        } else if (options.getAggregation() == Aggregation.DISTINCT_USERNAMES) {
+            m_printStream.printf(DISTINCT_COUNTS_MESSAGE, results.getRelativeError() * 100);
+        }
 
         for (GroupBy group : options.getGroupingConditions()) {
             m_printStream.printf(RESULT_TABLE_COLUMN, group.toString(), "|");
         }
         m_printStream.printf(RESULT_TABLE_COUNT_COLUMN, "COUNT");
+        if (estimated) {
+            m_printStream.printf(RESULT_TABLE_COUNT_COLUMN, "ERROR");
+        }
         m_printStream.println();
-        for (Map.Entry<GroupingKey, BigInteger> pair : results.getStatistic().entrySet()) {
+        results.forEachGroup((key, count) -> {
             for (GroupBy group : options.getGroupingConditions()) {
-                String value = pair.getKey().getConditionValue(group);
+                String value = key.getConditionValue(group);
                 if (value != null) {
                     m_printStream.printf(RESULT_TABLE_COLUMN, value, "|");
                 }
             }
-            m_printStream.printf(RESULT_TABLE_COUNT_COLUMN, pair.getValue());
+            m_printStream.printf(RESULT_TABLE_COUNT_COLUMN, count);
+            if (estimated) {
+                m_printStream.printf(RESULT_TABLE_COUNT_COLUMN, results.getError(key));
+            }
             m_printStream.println();
+        });
+
+        for (Filter filter : Filter.values()) {
+            Map<String, Long> hits = results.getTermHits(filter);
+            if (!hits.isEmpty()) {
+                m_printStream.printf(TERM_HITS_MESSAGE, filter);
+                m_printStream.printf(RESULT_TABLE_COUNT_COLUMN, "COUNT");
+                m_printStream.println(filter);
+                hits.forEach((term, count) -> {
+                    m_printStream.printf(RESULT_TABLE_COUNT_COLUMN, count);
+                    m_printStream.println(term);
+                });
+            }
         }
     }
 
@@ -147,6 +222,36 @@ public class ConsoleController {
         }
     }
 
+    private void topCount(ParseOptions options, BufferedReader reader, String text) throws IOException {
+        while (true) {
+            m_printStream.println(text);
+            String line = reader.readLine();
+            if (!line.isEmpty()) {
+                ResponseMessage message = options.setTopCount(line);
+                m_printStream.println(message);
+                if (message == ResponseMessage.SUCCESS) {
+                    break;
+                }
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void distinctCount(ParseOptions options, BufferedReader reader, String text) throws IOException {
+        while (true) {
+            m_printStream.println(text);
+            String line = reader.readLine();
+            if (line.trim().equalsIgnoreCase(DISTINCT_ANSWER)) {
+                options.setDistinctUsernamesCounting();
+                m_printStream.println(ResponseMessage.SUCCESS);
+                break;
+            } else if (line.isEmpty()) {
+                break;
+            }
+        }
+    }
+
     private void inputPath(ParseOptions options, BufferedReader reader, String text) throws IOException {
         while (true) {
             m_printStream.println(text);
@@ -164,7 +269,7 @@ public class ConsoleController {
             m_printStream.println(text);
             String line = reader.readLine();
             if (!line.isEmpty()) {
-                ResponseMessage message = options.setMessageFilter(line);
+                ResponseMessage message = options.setMessageFilterTerms(line);
                 m_printStream.println(message);
                 if (message == ResponseMessage.SUCCESS) {
                     break;
@@ -199,7 +304,7 @@ public class ConsoleController {
             m_printStream.println(text);
             String line = reader.readLine();
             if (!line.isEmpty()) {
-                ResponseMessage message = options.setUsernameFilter(line);
+                ResponseMessage message = options.setUsernameFilterTerms(line);
                 m_printStream.println(message);
                 if (message == ResponseMessage.SUCCESS) {
                     break;
@@ -0,0 +1,293 @@
+package com.kyriba.parser.controller;
+
+import com.kyriba.parser.core.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller that serves queries of local clients over a socket.
+ * <p>
+ * <p>The daemon keeps a single warm parser, so compiled patterns, JIT compiled code and caches of dates, indexes
+ * and file bounds are reused by all queries. It listens on the loopback interface only. Queries are executed one by one,
+ * every query uses all parsing threads.</p>
+ * <p>
+ * <p>Request is a list of {@code key=value} lines terminated by an empty line:
+ * {@code input} (path to log files), {@code username}, {@code date.from}, {@code date.to}, {@code message}
+ * {@code group} (comma separated grouping conditions) and {@code top} (number of the most frequent usernames
+ * of every group to estimate instead of exact counts) or {@code distinct=true} (estimate number of distinct usernames
+ * of every group instead of number of lines). Request {@code command=shutdown} stops the daemon.
+ * {@code username} and {@code message} accept several values separated by {@value Constants#FILTER_TERMS_SEPARATOR}
+ * or a path to a file of values after {@value Constants#FILTER_TERMS_FILE_PREFIX}. The characters themselves are escaped
+ * with {@value Constants#FILTER_TERMS_ESCAPE}, e.g. {@code message=a\|b} is a single value.
+ * Several queries over the same input are separated by {@value #QUERY_SEPARATOR} lines and parsed in a single pass
+ * by {@link Parser#parseBatch(List)}. Queries without {@code input} use input of the previous query.</p>
+ * <p>
+ * <p>Response is a list of {@code key=value} lines too: {@code status} (name of {@link ResponseMessage}),
+ * {@code message} if the query failed, otherwise {@code output} (path to the output file of the query),
+ * {@code filtered}, {@code time} in milliseconds, {@code columns} and a {@code row} per group.
+ * Estimated counts have additional {@code ERROR} column with maximum overestimation of the count.
+ * Distinct counts have {@code DISTINCT} column instead of {@code COUNT} and {@code error} line with relative standard error.
+ * Filters with several values add a {@code hits} line per value: filter, value and number of filtered lines that matched the value.
+ * Values of columns and rows are separated by tabs. Every query gets its own output file.
+ * Response of a batch has a {@code query} line with number of the query before its lines.
+ * If a query of the batch is invalid, the batch isn't parsed.</p>
+ *
+ * @author VMyakushin
+ */
+public class DaemonController {
+    private static final Logger logger = Logger.getLogger(DaemonController.class.getName());
+    private static final int BACKLOG = 50;
+    private static final int REQUEST_TIMEOUT = 30000;
+    private static final String KEY_SEPARATOR = "=";
+    private static final String COLUMN_SEPARATOR = "\t";
+    private static final String COMMAND_SHUTDOWN = "shutdown";
+    private static final String QUERY_SEPARATOR = ";";
+    private final int m_port;
+    private final Parser m_parser;
+    private final long m_startTime = System.currentTimeMillis();
+    private long m_queriesCount;
+
+    /**
+     * Constructor. Configuration must be loaded and patterns must be compiled before.
+     *
+     * @param port local port of the daemon.
+     * @throws IOException if the parser cannot be created.
+     */
+    public DaemonController(final int port) throws IOException {
+        m_port = port;
+        m_parser = ConsoleController.createParser();
+    }
+
+    /**
+     * Serve queries until shutdown request.
+     *
+     * @throws IOException if the port cannot be bound.
+     */
+    public void start() throws IOException {
+        try (ServerSocket server = new ServerSocket(m_port, BACKLOG, InetAddress.getLoopbackAddress())) {
+            logger.log(Level.INFO, "Daemon is listening on " + server.getLocalSocketAddress());
+            boolean running = true;
+            while (running) {
+                try (Socket socket = server.accept()) {
+                    socket.setSoTimeout(REQUEST_TIMEOUT);
+                    running = serve(socket);
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, "Request cannot be served", e);
+                }
+            }
+        }
+        logger.log(Level.INFO, "Daemon was stopped");
+    }
+
+    /**
+     * Read request and write response.
+     *
+     * @return {@code false} if the daemon must be stopped.
+     */
+    private boolean serve(final Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+        List<Map<String, String>> queries = new ArrayList<>();
+        Map<String, String> request = new LinkedHashMap<>();
+        queries.add(request);
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            if (line.trim().equals(QUERY_SEPARATOR)) {
+                String input = request.get("input");
+                request = new LinkedHashMap<>();
+                if (input != null) {
+                    request.put("input", input);
+                }
+                queries.add(request);
+                continue;
+            }
+            String[] pair = line.split(KEY_SEPARATOR, 2);
+            request.put(pair[0].trim().toLowerCase(), pair.length > 1 ? pair[1].trim() : "");
+        }
+
+        boolean running = !COMMAND_SHUTDOWN.equals(queries.get(0).get("command"));
+        if (running) {
+            query(queries, writer);
+        } else {
+            writeStatus(writer, ResponseMessage.SUCCESS);
+        }
+        writer.flush();
+        return running;
+    }
+
+    private void query(final List<Map<String, String>> queries, final PrintWriter writer) {
+        boolean batch = queries.size() > 1;
+        List<ParseOptions> options = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            ParseOptions queryOptions = new ParseOptions();
+            ResponseMessage message = createOptions(queries.get(i), queryOptions);
+            if (message != ResponseMessage.SUCCESS) {
+                writeQueryNumber(writer, batch, i);
+                writeStatus(writer, message);
+                return;
+            }
+            options.add(queryOptions);
+        }
+        if (batch && !isSameInput(options)) {
+            writeStatus(writer, ResponseMessage.BATCH_INPUT_IS_NOT_SAME);
+            return;
+        }
+        for (ParseOptions queryOptions : options) {
+            ResponseMessage message = queryOptions.setOutputPath(nextOutputPath());
+            if (message != ResponseMessage.SUCCESS) {
+                writeStatus(writer, message);
+                return;
+            }
+        }
+        try {
+            logger.log(Level.INFO, "Query started: " + queries);
+            long start = System.currentTimeMillis();
+            List<ParsingResults> results = batch ? m_parser.parseBatch(options)
+                    : Collections.singletonList(m_parser.parse(options.get(0)));
+            long time = System.currentTimeMillis() - start;
+            logger.log(Level.INFO, String.format("%d queries were completed in %d ms", queries.size(), time));
+            try {
+                for (int i = 0; i < results.size(); i++) {
+                    writeQueryNumber(writer, batch, i);
+                    writeStatus(writer, ResponseMessage.SUCCESS);
+                    writeResults(writer, options.get(i), results.get(i), time);
+                }
+            } finally {
+                ParsingResults.releaseAll(results);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.SEVERE, ResponseMessage.WRONG_REGULAR_EXPRESSION.toString(), e);
+            writeStatus(writer, ResponseMessage.WRONG_REGULAR_EXPRESSION);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, ResponseMessage.UNKNOWN_ERROR.toString(), e);
+            writeStatus(writer, ResponseMessage.UNKNOWN_ERROR);
+        }
+    }
+
+    /**
+     * Fill options by request the same way as {@link ConsoleController} does by user input.
+     *
+     * @return validity check result.
+     */
+    private ResponseMessage createOptions(final Map<String, String> request, final ParseOptions options) {
+        ResponseMessage message = options.setInputPath(request.getOrDefault("input", ""));
+        if (message == ResponseMessage.SUCCESS && !request.getOrDefault("username", "").isEmpty()) {
+            message = options.setUsernameFilterTerms(request.get("username"));
+        }
+        if (message == ResponseMessage.SUCCESS && !request.getOrDefault("date.from", "").isEmpty()) {
+            message = options.setDateFilter(request.get("date.from"), request.getOrDefault("date.to", ""),
+                    Configuration.INSTANCE.getDateFormat());
+        }
+        if (message == ResponseMessage.SUCCESS && !request.getOrDefault("message", "").isEmpty()) {
+            message = options.setMessageFilterTerms(request.get("message"));
+        }
+        if (message == ResponseMessage.SUCCESS) {
+            message = options.checkFilterValidity();
+        }
+        if (message == ResponseMessage.SUCCESS) {
+            for (String group : request.getOrDefault("group", "").split(Constants.GROUP_BY_SEPARATOR)) {
+                if (!group.trim().isEmpty()) {
+                    try {
+                        options.addGroupingCondition(GroupBy.valueOf(group.trim().toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        return ResponseMessage.WRONG_GROUP_VALUE;
+                    }
+                }
+            }
+            if (Boolean.parseBoolean(request.get("distinct"))) {
+                options.setDistinctUsernamesCounting();
+            }
+            if (!request.getOrDefault("top", "").isEmpty()) {
+                message = options.setTopCount(request.get("top"));
+                if (message != ResponseMessage.SUCCESS) {
+                    return message;
+                }
+            }
+            message = options.checkGroupingValidity();
+        }
+        return message;
+    }
+
+    private static boolean isSameInput(final List<ParseOptions> options) {
+        for (ParseOptions queryOptions : options) {
+            if (!queryOptions.getInputFile().equals(options.get(0).getInputFile())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return configured output path with unique suffix of the query.
+     */
+    private String nextOutputPath() {
+        String path = Configuration.INSTANCE.getOutputPath();
+        int extension = path.lastIndexOf('.');
+        if (extension <= Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'))) {
+            extension = path.length();
+        }
+        return String.format("%s-%d-%d%s", path.substring(0, extension), m_startTime, ++m_queriesCount, path.substring(extension));
+    }
+
+    private static void writeQueryNumber(final PrintWriter writer, final boolean batch, final int index) {
+        if (batch) {
+            writer.println("query=" + (index + 1));
+        }
+    }
+
+    private static void writeStatus(final PrintWriter writer, final ResponseMessage message) {
+        writer.println("status=" + message.name());
+        if (message != ResponseMessage.SUCCESS) {
+            writer.println("message=" + message.toString().replaceAll("\\s+", " ").trim());
+        }
+    }
+
+    private static void writeResults(final PrintWriter writer, final ParseOptions options,
+                                     final ParsingResults results, final long time) {
+        writer.println("output=" + options.getOutputFile().getAbsolutePath());
+        writer.println("filtered=" + results.countFilteredLines());
+        writer.println("time=" + time);
+        StringBuilder columns = new StringBuilder();
+        for (GroupBy group : options.getGroupingConditions()) {
+            columns.append(group).append(COLUMN_SEPARATOR);
+        }
+        if (options.getAggregation() == Aggregation.DISTINCT_USERNAMES) {
+            writer.println("error=" + results.getRelativeError());
+            columns.append("DISTINCT");
+        } else {
+            columns.append("COUNT");
+        }
+        boolean estimated = options.getAggregation() == Aggregation.TOP_USERNAMES;
+        if (estimated) {
+            columns.append(COLUMN_SEPARATOR).append("ERROR");
+        }
+        writer.println("columns=" + columns);
+        results.forEachGroup((key, count) -> {
+            StringBuilder row = new StringBuilder();
+            for (GroupBy group : options.getGroupingConditions()) {
+                String value = key.getConditionValue(group);
+                row.append(value != null ? value : "").append(COLUMN_SEPARATOR);
+            }
+            row.append(count);
+            if (estimated) {
+                row.append(COLUMN_SEPARATOR).append(results.getError(key));
+            }
+            writer.println("row=" + row);
+        });
+        for (Filter filter : Filter.values()) {
+            results.getTermHits(filter).forEach((term, count) ->
+                    writer.println("hits=" + filter + COLUMN_SEPARATOR + term + COLUMN_SEPARATOR + count));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.kyriba.parser.core;
+
+/**
+ * Possible ways to count matched lines by groups.
+ *
+ * @author VMyakushin
+ */
+public enum Aggregation {
+    /**
+     * Every group is counted exactly. Memory grows with number of groups.
+     */
+    EXACT,
+    /**
+     * Only the most frequent usernames of every time group are counted by {@link SpaceSaving} summaries.
+     * Memory is fixed for every time group, counts are estimated with reported errors.
+     */
+    TOP_USERNAMES,
+    /**
+     * Number of distinct usernames of every time group is estimated by {@link HyperLogLog} sketches
+     * instead of number of lines. Memory is fixed for every time group.
+     */
+    DISTINCT_USERNAMES
+}
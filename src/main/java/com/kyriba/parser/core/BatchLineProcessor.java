@@ -0,0 +1,80 @@
+package com.kyriba.parser.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies several queries to the same lines.
+ * <p>
+ * <p>The processor handles the first query of the batch as a regular {@link LineProcessor}, so its matched lines
+ * are written by the caller. Other queries share the {@link LineExtractor} of the first one, so every field
+ * of a line is extracted once for all queries. Matched lines of other queries are written by the processor itself
+ * to the {@link #setOutputs(OutputSink[]) outputs} of the current region. Write errors are thrown as {@link UncheckedIOException}.</p>
+ * <p>
+ * <p>Not thread-safe. Every parsing thread must use its own instance.</p>
+ *
+ * @author VMyakushin
+ */
+class BatchLineProcessor extends LineProcessor {
+    private final LineProcessor[] m_others;
+    private OutputSink[] m_outputs;
+
+    /**
+     * Constructor.
+     *
+     * @param batch queries. Every query gets its own {@link ParsingResults}.
+     */
+    BatchLineProcessor(final List<ParseOptions> batch) {
+        super(batch.get(0), new ParsingResults(batch.get(0)));
+        m_others = new LineProcessor[batch.size() - 1];
+        for (int i = 0; i < m_others.length; i++) {
+            ParseOptions options = batch.get(i + 1);
+            m_others[i] = new LineProcessor(options, new ParsingResults(options), getExtractor());
+        }
+    }
+
+    /**
+     * Set sinks for matched lines of the next region.
+     *
+     * @param outputs sinks in the order of queries. Sink of the first query is used by the caller.
+     */
+    void setOutputs(final OutputSink[] outputs) {
+        m_outputs = outputs;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Matched lines of other queries are written to their outputs.
+     *
+     * @return {@code true} if the line matches the first query.
+     * @throws UncheckedIOException in case of writing errors.
+     */
+    @Override
+    public boolean process(final byte[] bytes, final int offset, final int length) throws IllegalArgumentException {
+        boolean matched = super.process(bytes, offset, length);
+        for (int i = 0; i < m_others.length; i++) {
+            if (m_others[i].processExtracted()) {
+                try {
+                    m_outputs[i + 1].writeLine(bytes, offset, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * @return results of all queries in the order of the batch.
+     */
+    List<ParsingResults> getAllResults() {
+        List<ParsingResults> results = new ArrayList<>(m_others.length + 1);
+        results.add(getResults());
+        for (LineProcessor other : m_others) {
+            results.add(other.getResults());
+        }
+        return results;
+    }
+}
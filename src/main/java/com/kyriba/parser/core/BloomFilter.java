@@ -0,0 +1,126 @@
+package com.kyriba.parser.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Bloom filter of strings.
+ * <p>
+ * <p>{@link #mightContain(String)} never returns {@code false} for added values,
+ * but can return {@code true} for values that were never added.</p>
+ *
+ * @author VMyakushin
+ */
+public class BloomFilter {
+    private static final int MIN_BITS = Long.SIZE;
+    private static final int MAX_HASHES = 16;
+    private final long[] m_bits;
+    private final int m_hashesCount;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedCount     expected number of values.
+     * @param falsePositiveRate desired probability of false positive answer.
+     * @throws IllegalArgumentException if false positive rate isn't in range (0, 1).
+     */
+    public BloomFilter(final int expectedCount, final double falsePositiveRate) throws IllegalArgumentException {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be in range (0, 1): " + falsePositiveRate);
+        }
+        int count = Math.max(1, expectedCount);
+        long bits = (long) Math.ceil(-count * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = Math.max(MIN_BITS, Math.min(bits, (long) Integer.MAX_VALUE));
+        m_bits = new long[(int) ((bits + Long.SIZE - 1) / Long.SIZE)];
+        m_hashesCount = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) m_bits.length * Long.SIZE / count * Math.log(2))));
+    }
+
+    private BloomFilter(final long[] bits, final int hashesCount) {
+        m_bits = bits;
+        m_hashesCount = hashesCount;
+    }
+
+    /**
+     * @param value value to add.
+     */
+    public void add(final String value) {
+        long hash = hash(value);
+        long bitsCount = (long) m_bits.length * Long.SIZE;
+        for (int i = 0; i < m_hashesCount; i++) {
+            long bit = bitIndex(hash, i, bitsCount);
+            m_bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param value value to check.
+     * @return {@code false} if the value was never added.
+     */
+    public boolean mightContain(final String value) {
+        long hash = hash(value);
+        long bitsCount = (long) m_bits.length * Long.SIZE;
+        for (int i = 0; i < m_hashesCount; i++) {
+            long bit = bitIndex(hash, i, bitsCount);
+            if ((m_bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write filter to the output.
+     *
+     * @param out output.
+     * @throws IOException in case of writing errors.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(m_hashesCount);
+        out.writeInt(m_bits.length);
+        for (long word : m_bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Read filter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in input.
+     * @return filter.
+     * @throws IOException in case of reading errors.
+     */
+    public static BloomFilter readFrom(final DataInput in) throws IOException {
+        int hashesCount = in.readInt();
+        long[] bits = new long[in.readInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, hashesCount);
+    }
+
+    /**
+     * Double hashing: i-th hash is combination of low and high halves of a single 64-bit hash.
+     */
+    private static long bitIndex(final long hash, final int i, final long bitsCount) {
+        long combined = (int) hash + (long) i * (int) (hash >>> 32);
+        return (combined & Long.MAX_VALUE) % bitsCount;
+    }
+
+    /**
+     * @return FNV-1a hash of characters with final avalanche of MurmurHash3.
+     */
+    static long hash(final String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,84 @@
+package com.kyriba.parser.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text line that is kept as bytes of a buffer.
+ * <p>
+ * <p>Every byte is a character, so the line is a view of the buffer decoded as ISO-8859-1 without copying.
+ * The view is equal to the decoded line if the line is written in ISO-8859-1
+ * or if it contains only ASCII bytes and its charset is compatible with ASCII.
+ * Regular expressions match the view as any other {@link CharSequence}, only extracted values become strings.</p>
+ * <p>
+ * <p>Not thread-safe. The view is valid until the buffer is changed.</p>
+ *
+ * @author VMyakushin
+ */
+final class ByteLine implements CharSequence {
+    private byte[] m_bytes;
+    private int m_offset;
+    private int m_length;
+
+    ByteLine() {
+        this(new byte[0], 0, 0);
+    }
+
+    private ByteLine(final byte[] bytes, final int offset, final int length) {
+        set(bytes, offset, length);
+    }
+
+    /**
+     * Point the view to another line.
+     *
+     * @param bytes  buffer that contains the line.
+     * @param offset position of the first byte of the line.
+     * @param length number of bytes of the line.
+     */
+    void set(final byte[] bytes, final int offset, final int length) {
+        m_bytes = bytes;
+        m_offset = offset;
+        m_length = length;
+    }
+
+    @Override
+    public int length() {
+        return m_length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= m_length) {
+            throw new IndexOutOfBoundsException("Index out of range [0, " + m_length + "): " + index);
+        }
+        return (char) (m_bytes[m_offset + index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        if (start < 0 || start > end || end > m_length) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") is out of [0, " + m_length + ")");
+        }
+        return new ByteLine(m_bytes, m_offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(m_bytes, m_offset, m_length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param bytes  buffer that contains the line.
+     * @param offset position of the first byte of the line.
+     * @param length number of bytes of the line.
+     * @return {@code true} if all bytes of the line are ASCII characters.
+     */
+    static boolean isAscii(final byte[] bytes, final int offset, final int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+package com.kyriba.parser.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+
+/**
+ * State of incremental analysis of a single file.
+ * <p>
+ * <p>Describes the file as it was seen by the last run: identity, size and fingerprint of leading bytes,
+ * offset next to the last parsed line and statistic of all lines before the offset.</p>
+ *
+ * @author VMyakushin
+ */
+public class Checkpoint {
+    static final int FINGERPRINT_SIZE = 4096;
+    private final String m_identity;
+    private final long m_size;
+    private final int m_fingerprintLength;
+    private final long m_fingerprint;
+    private final long m_offset;
+    private final ParsingResults m_results;
+
+    /**
+     * Constructor.
+     *
+     * @param identity          file system identity of the file or {@code null} if it isn't supported.
+     * @param size              size of the file.
+     * @param fingerprintLength number of leading bytes in fingerprint.
+     * @param fingerprint       checksum of leading bytes.
+     * @param offset            position next to the last parsed line.
+     * @param results           statistic of lines before the offset.
+     */
+    public Checkpoint(final String identity, final long size, final int fingerprintLength, final long fingerprint,
+                      final long offset, final ParsingResults results) {
+        m_identity = identity;
+        m_size = size;
+        m_fingerprintLength = fingerprintLength;
+        m_fingerprint = fingerprint;
+        m_offset = offset;
+        m_results = results;
+    }
+
+    /**
+     * Create checkpoint for the current state of the file.
+     *
+     * @param file    parsed file.
+     * @param offset  position next to the last parsed line.
+     * @param results statistic of lines before the offset.
+     * @return checkpoint.
+     * @throws IOException in case of reading errors.
+     */
+    public static Checkpoint create(final File file, final long offset, final ParsingResults results) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        int fingerprintLength = (int) Math.min(FINGERPRINT_SIZE, attributes.size());
+        return new Checkpoint(getIdentity(attributes), attributes.size(), fingerprintLength,
+                fingerprint(file, fingerprintLength), offset, results);
+    }
+
+    /**
+     * Check that the file is the same file that was checkpointed and it was only appended since then.
+     *
+     * @param file file for analysis.
+     * @return {@code true} if parsing can be continued from {@link #getOffset() offset}.
+     * @throws IOException in case of reading errors.
+     */
+    public boolean isValidFor(final File file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        if (attributes.size() < m_size) {
+            return false;
+        }
+        String identity = getIdentity(attributes);
+        if (identity != null && m_identity != null && !identity.equals(m_identity)) {
+            return false;
+        }
+        return fingerprint(file, m_fingerprintLength) == m_fingerprint;
+    }
+
+    /**
+     * @return file system identity of the file or {@code null} if it isn't supported.
+     */
+    public String getIdentity() {
+        return m_identity;
+    }
+
+    /**
+     * @return size of the file.
+     */
+    public long getSize() {
+        return m_size;
+    }
+
+    /**
+     * @return number of leading bytes in fingerprint.
+     */
+    public int getFingerprintLength() {
+        return m_fingerprintLength;
+    }
+
+    /**
+     * @return checksum of leading bytes.
+     */
+    public long getFingerprint() {
+        return m_fingerprint;
+    }
+
+    /**
+     * @return position next to the last parsed line.
+     */
+    public long getOffset() {
+        return m_offset;
+    }
+
+    /**
+     * @return statistic of lines before the offset.
+     */
+    public ParsingResults getResults() {
+        return m_results;
+    }
+
+    private static String getIdentity(final BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey != null ? fileKey.toString() : null;
+    }
+
+    /**
+     * @param file   file.
+     * @param length number of leading bytes.
+     * @return checksum of leading bytes or {@code -1} if the file is shorter.
+     * @throws IOException in case of reading errors.
+     */
+    static long fingerprint(final File file, final int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                //read leading bytes
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        return buffer.hasRemaining() ? -1 : crc.getValue();
+    }
+}
@@ -0,0 +1,149 @@
+package com.kyriba.parser.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent storage of {@link Checkpoint checkpoints}.
+ * <p>
+ * <p>Every checkpoint is stored in its own file in the storage directory.
+ * Checkpoint belongs to a pair of input file and query (filters, grouping conditions and aggregation),
+ * because saved statistic is valid only for the same query.</p>
+ * <p>
+ * <p>Thread-safe for different input files.</p>
+ *
+ * @author VMyakushin
+ */
+public class CheckpointStore {
+    private static final Logger logger = Logger.getLogger(CheckpointStore.class.getName());
+    private static final int MAGIC = 0x4C415443;
+    private static final int VERSION = 3;
+    private static final String EXTENSION = ".chk";
+    private final File m_directory;
+
+    /**
+     * Constructor. Directory is created if it doesn't exist.
+     *
+     * @param directory storage directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    public CheckpointStore(final File directory) throws IOException {
+        m_directory = directory;
+        Files.createDirectories(directory.toPath());
+    }
+
+    /**
+     * Load checkpoint of the file for the query.
+     *
+     * @param options user defined input parameters.
+     * @param file    input file.
+     * @return checkpoint or {@code null} if it doesn't exist or cannot be read.
+     */
+    public Checkpoint load(final ParseOptions options, final File file) {
+        File checkpointFile = getCheckpointFile(options, file);
+        if (!checkpointFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !in.readUTF().equals(digest(getQuery(options))) || !in.readUTF().equals(file.getAbsolutePath())) {
+                return null;
+            }
+            String identity = in.readBoolean() ? in.readUTF() : null;
+            long size = in.readLong();
+            int fingerprintLength = in.readInt();
+            long fingerprint = in.readLong();
+            long offset = in.readLong();
+            ParsingResults results = ParsingResults.readFrom(in, options);
+            return new Checkpoint(identity, size, fingerprintLength, fingerprint, offset, results);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Checkpoint cannot be read and will be ignored: " + checkpointFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Save checkpoint of the file for the query. Previous checkpoint is replaced atomically.
+     *
+     * @param options    user defined input parameters.
+     * @param file       input file.
+     * @param checkpoint checkpoint.
+     * @throws IOException in case of writing errors.
+     */
+    public void save(final ParseOptions options, final File file, final Checkpoint checkpoint) throws IOException {
+        File checkpointFile = getCheckpointFile(options, file);
+        File temporary = File.createTempFile(checkpointFile.getName(), ".tmp", m_directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(digest(getQuery(options)));
+                out.writeUTF(file.getAbsolutePath());
+                out.writeBoolean(checkpoint.getIdentity() != null);
+                if (checkpoint.getIdentity() != null) {
+                    out.writeUTF(checkpoint.getIdentity());
+                }
+                out.writeLong(checkpoint.getSize());
+                out.writeInt(checkpoint.getFingerprintLength());
+                out.writeLong(checkpoint.getFingerprint());
+                out.writeLong(checkpoint.getOffset());
+                checkpoint.getResults().writeTo(out);
+            }
+            Files.move(temporary.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    private File getCheckpointFile(final ParseOptions options, final File file) {
+        String key = getQuery(options) + System.lineSeparator() + file.getAbsolutePath();
+        return new File(m_directory, digest(key) + EXTENSION);
+    }
+
+    /**
+     * Digest of a text, so long queries fit into a checkpoint header.
+     *
+     * @param text text.
+     * @return SHA-256 of the text in hex.
+     */
+    private static String digest(final String text) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return text that is the same for queries with the same filters, grouping conditions and aggregation.
+     * Terms of a filter are separated by line feeds, which terms cannot contain.
+     */
+    private static String getQuery(final ParseOptions options) {
+        StringBuilder query = new StringBuilder();
+        for (Filter filter : Filter.values()) {
+            List<String> terms = options.getFilterTerms(filter);
+            if (terms != null) {
+                query.append(filter).append('=').append(String.join("\n", terms)).append(';');
+            }
+        }
+        query.append(Constants.GROUP_BY_SEPARATOR);
+        for (GroupBy condition : options.getGroupingConditions()) {
+            query.append(condition).append(Constants.GROUP_BY_SEPARATOR);
+        }
+        if (options.getAggregation() != Aggregation.EXACT) {
+            query.append(options.getAggregation()).append('=').append(options.getTopCount());
+        }
+        return query.toString();
+    }
+}
@@ -1,9 +1,12 @@
 package com.kyriba.parser.core;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The tool configuration. Singleton.
@@ -17,8 +20,25 @@ public enum Configuration {
         private static final String USERNAME_PATTERN = "pattern.username";
         private static final String DATE_PATTERN = "pattern.date";
         private static final String MESSAGE_PATTERN = "pattern.message";
+        private static final String LINE_LAYOUT = "pattern.layout";
         private static final String DATE_FORMAT = "format.date";
         private static final String OUTPUT_PATH = "path.log.output";
+        private static final String THREADS_COUNT = "parser.threads";
+        private static final String CHUNK_SIZE = "parser.chunk.size";
+        private static final String CHECKPOINT_PATH = "path.checkpoint";
+        private static final String INDEX_PATH = "path.index";
+        private static final String INDEX_BLOCK_SIZE = "index.block.size";
+        private static final String INCLUDE_PATTERNS = "input.include";
+        private static final String EXCLUDE_PATTERNS = "input.exclude";
+        private static final String PRUNE_BY_DATE = "input.prune.by.date";
+        private static final String METRICS_ENABLED = "metrics.enabled";
+        private static final String PROGRESS_INTERVAL = "metrics.progress.interval";
+        private static final String DAEMON_PORT = "daemon.port";
+        private static final String AGGREGATION_MEMORY_LIMIT = "aggregation.memory.limit";
+        private static final String AGGREGATION_OFF_HEAP = "aggregation.offheap";
+        private static final String INPUT_CHARSET = "input.charset";
+        private static final long BYTES_IN_MEGABYTE = 1024 * 1024;
+        private static final int MAX_PORT = 65535;
         private SimpleDateFormat m_dateFormat;
         private Properties m_properties;
 
@@ -37,6 +57,11 @@ public enum Configuration {
             return m_properties.getProperty(MESSAGE_PATTERN);
         }
 
+        @Override
+        public String getLineLayout() {
+            return m_properties.getProperty(LINE_LAYOUT, DefaultConfig.DEFAULT_LINE_LAYOUT);
+        }
+
         @Override
         public String getDateFormatString() {
             return m_properties.getProperty(DATE_FORMAT);
@@ -52,6 +77,124 @@ public enum Configuration {
             return m_properties.getProperty(OUTPUT_PATH);
         }
 
+        @Override
+        public int getThreadsCount() {
+            int threadsCount = 0;
+            try {
+                threadsCount = Integer.parseInt(m_properties.getProperty(THREADS_COUNT, DefaultConfig.DEFAULT_THREADS_COUNT).trim());
+            } catch (NumberFormatException e) {
+                //nothing. use number of processors.
+            }
+            return threadsCount > 0 ? threadsCount : Runtime.getRuntime().availableProcessors();
+        }
+
+        @Override
+        public long getChunkSize() {
+            long chunkSize = 0;
+            try {
+                chunkSize = Long.parseLong(m_properties.getProperty(CHUNK_SIZE, DefaultConfig.DEFAULT_CHUNK_SIZE).trim());
+            } catch (NumberFormatException e) {
+                //nothing. use default size.
+            }
+            return (chunkSize > 0 ? chunkSize : Long.parseLong(DefaultConfig.DEFAULT_CHUNK_SIZE)) * BYTES_IN_MEGABYTE;
+        }
+
+        @Override
+        public String getCheckpointPath() {
+            return m_properties.getProperty(CHECKPOINT_PATH, DefaultConfig.DEFAULT_CHECKPOINT_PATH).trim();
+        }
+
+        @Override
+        public String getIndexPath() {
+            return m_properties.getProperty(INDEX_PATH, DefaultConfig.DEFAULT_INDEX_PATH).trim();
+        }
+
+        @Override
+        public long getIndexBlockSize() {
+            long blockSize = 0;
+            try {
+                blockSize = Long.parseLong(m_properties.getProperty(INDEX_BLOCK_SIZE, DefaultConfig.DEFAULT_INDEX_BLOCK_SIZE).trim());
+            } catch (NumberFormatException e) {
+                //nothing. use default size.
+            }
+            return (blockSize > 0 ? blockSize : Long.parseLong(DefaultConfig.DEFAULT_INDEX_BLOCK_SIZE)) * BYTES_IN_MEGABYTE;
+        }
+
+        @Override
+        public String getIncludePatterns() {
+            return m_properties.getProperty(INCLUDE_PATTERNS, DefaultConfig.DEFAULT_INCLUDE_PATTERNS);
+        }
+
+        @Override
+        public String getExcludePatterns() {
+            return m_properties.getProperty(EXCLUDE_PATTERNS, DefaultConfig.DEFAULT_EXCLUDE_PATTERNS);
+        }
+
+        @Override
+        public boolean isPruneByDate() {
+            return Boolean.parseBoolean(m_properties.getProperty(PRUNE_BY_DATE, DefaultConfig.DEFAULT_PRUNE_BY_DATE).trim());
+        }
+
+        @Override
+        public boolean isMetricsEnabled() {
+            return Boolean.parseBoolean(m_properties.getProperty(METRICS_ENABLED, DefaultConfig.DEFAULT_METRICS_ENABLED).trim());
+        }
+
+        @Override
+        public int getProgressInterval() {
+            int interval = 0;
+            try {
+                interval = Integer.parseInt(m_properties.getProperty(PROGRESS_INTERVAL, DefaultConfig.DEFAULT_PROGRESS_INTERVAL).trim());
+            } catch (NumberFormatException e) {
+                //nothing. progress isn't printed.
+            }
+            return Math.max(interval, 0);
+        }
+
+        @Override
+        public int getDaemonPort() {
+            int port = 0;
+            try {
+                port = Integer.parseInt(m_properties.getProperty(DAEMON_PORT, DefaultConfig.DEFAULT_DAEMON_PORT).trim());
+            } catch (NumberFormatException e) {
+                //nothing. use default port.
+            }
+            return port > 0 && port <= MAX_PORT ? port : Integer.parseInt(DefaultConfig.DEFAULT_DAEMON_PORT);
+        }
+
+        @Override
+        public long getAggregationMemoryLimit() {
+            long limit = 0;
+            try {
+                limit = Long.parseLong(m_properties.getProperty(AGGREGATION_MEMORY_LIMIT, DefaultConfig.DEFAULT_AGGREGATION_MEMORY_LIMIT).trim());
+            } catch (NumberFormatException e) {
+                //nothing. memory isn't limited.
+            }
+            return Math.max(limit, 0) * BYTES_IN_MEGABYTE;
+        }
+
+        @Override
+        public boolean isOffHeapAggregation() {
+            return Boolean.parseBoolean(m_properties.getProperty(AGGREGATION_OFF_HEAP, DefaultConfig.DEFAULT_AGGREGATION_OFF_HEAP).trim());
+        }
+
+        @Override
+        public Charset getInputCharset() {
+            String name = m_properties.getProperty(INPUT_CHARSET, DefaultConfig.DEFAULT_INPUT_CHARSET).trim();
+            Charset charset;
+            try {
+                charset = name.isEmpty() ? Charset.defaultCharset() : Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                return Charset.defaultCharset(); //unknown charset. use default one.
+            }
+            if (!LineExtractor.isAsciiCompatible(charset)) {
+                logger.log(Level.WARNING, "Lines cannot be split in charset " + charset
+                        + ", because it doesn't encode line feed as a single byte. Default charset is used.");
+                return Charset.defaultCharset();
+            }
+            return charset;
+        }
+
         @Override
         public void load(final String configPath) throws IOException {
             m_properties = new Properties();
@@ -66,8 +209,23 @@ public enum Configuration {
                 m_properties.setProperty(USERNAME_PATTERN, DefaultConfig.DEFAULT_USERNAME_PATTERN);
                 m_properties.setProperty(DATE_PATTERN, DefaultConfig.DEFAULT_DATE_PATTERN);
                 m_properties.setProperty(MESSAGE_PATTERN, DefaultConfig.DEFAULT_MESSAGE_PATTERN);
+                m_properties.setProperty(LINE_LAYOUT, DefaultConfig.DEFAULT_LINE_LAYOUT);
                 m_properties.setProperty(DATE_FORMAT, DefaultConfig.DEFAULT_DATE_FORMAT);
                 m_properties.setProperty(OUTPUT_PATH, DefaultConfig.DEFAULT_OUTPUT_PATH);
+                m_properties.setProperty(THREADS_COUNT, DefaultConfig.DEFAULT_THREADS_COUNT);
+                m_properties.setProperty(CHUNK_SIZE, DefaultConfig.DEFAULT_CHUNK_SIZE);
+                m_properties.setProperty(CHECKPOINT_PATH, DefaultConfig.DEFAULT_CHECKPOINT_PATH);
+                m_properties.setProperty(INDEX_PATH, DefaultConfig.DEFAULT_INDEX_PATH);
+                m_properties.setProperty(INDEX_BLOCK_SIZE, DefaultConfig.DEFAULT_INDEX_BLOCK_SIZE);
+                m_properties.setProperty(INCLUDE_PATTERNS, DefaultConfig.DEFAULT_INCLUDE_PATTERNS);
+                m_properties.setProperty(EXCLUDE_PATTERNS, DefaultConfig.DEFAULT_EXCLUDE_PATTERNS);
+                m_properties.setProperty(PRUNE_BY_DATE, DefaultConfig.DEFAULT_PRUNE_BY_DATE);
+                m_properties.setProperty(METRICS_ENABLED, DefaultConfig.DEFAULT_METRICS_ENABLED);
+                m_properties.setProperty(PROGRESS_INTERVAL, DefaultConfig.DEFAULT_PROGRESS_INTERVAL);
+                m_properties.setProperty(DAEMON_PORT, DefaultConfig.DEFAULT_DAEMON_PORT);
+                m_properties.setProperty(AGGREGATION_MEMORY_LIMIT, DefaultConfig.DEFAULT_AGGREGATION_MEMORY_LIMIT);
+                m_properties.setProperty(AGGREGATION_OFF_HEAP, DefaultConfig.DEFAULT_AGGREGATION_OFF_HEAP);
+                m_properties.setProperty(INPUT_CHARSET, DefaultConfig.DEFAULT_INPUT_CHARSET);
 
                 config.getParentFile().mkdirs();
                 config.createNewFile();
@@ -80,6 +238,8 @@ public enum Configuration {
         }
     };
 
+    private static final Logger logger = Logger.getLogger(Configuration.class.getName());
+
     public abstract String getUsernamePattern();
 
     public abstract String getDatePattern();
@@ -88,10 +248,88 @@ public enum Configuration {
 
     public abstract String getDateFormatString();
 
+    /**
+     * @return fixed layout of log lines for {@link LineLayout}. Empty if fields are extracted by patterns only.
+     */
+    public abstract String getLineLayout();
+
     public abstract DateFormat getDateFormat();
 
     public abstract String getOutputPath();
 
+    /**
+     * @return number of parsing threads. Number of available processors if it isn't specified.
+     */
+    public abstract int getThreadsCount();
+
+    /**
+     * @return size of file chunk in bytes for parallel parsing of a single file.
+     */
+    public abstract long getChunkSize();
+
+    /**
+     * @return directory for checkpoints of incremental analysis. Empty string if incremental analysis is disabled.
+     */
+    public abstract String getCheckpointPath();
+
+    /**
+     * @return directory for file indexes. Empty string if indexes are disabled.
+     */
+    public abstract String getIndexPath();
+
+    /**
+     * @return size of file block in bytes for username index.
+     */
+    public abstract long getIndexBlockSize();
+
+    /**
+     * @return comma separated glob patterns of input files. Empty string if all files are included.
+     */
+    public abstract String getIncludePatterns();
+
+    /**
+     * @return comma separated glob patterns of input files that must be skipped.
+     */
+    public abstract String getExcludePatterns();
+
+    /**
+     * @return {@code true} if files that cannot contain lines of DATE filter range must be skipped.
+     * Files must be written chronologically.
+     */
+    public abstract boolean isPruneByDate();
+
+    /**
+     * @return {@code true} if parsing metrics must be collected and published via JMX.
+     */
+    public abstract boolean isMetricsEnabled();
+
+    /**
+     * @return interval in seconds between progress lines printed while parsing. Zero if progress isn't printed.
+     */
+    public abstract int getProgressInterval();
+
+    /**
+     * @return local port of the daemon.
+     */
+    public abstract int getDaemonPort();
+
+    /**
+     * @return memory budget in bytes of grouping counters of a single parsing thread.
+     * Counters over the budget are spilled to temporary files. Zero if memory isn't limited.
+     */
+    public abstract long getAggregationMemoryLimit();
+
+    /**
+     * @return {@code true} if grouping counters must be kept in direct memory instead of heap.
+     */
+    public abstract boolean isOffHeapAggregation();
+
+    /**
+     * @return charset of input files. Platform default charset if it isn't specified, isn't supported
+     * or isn't compatible with ASCII, e.g. UTF-16.
+     */
+    public abstract Charset getInputCharset();
+
     /**
      * Load configuration from specified path.
      * Config file with default configuration will be created if config file by specified path is missed.
@@ -107,7 +345,22 @@ public enum Configuration {
         private final static String DEFAULT_DATE_PATTERN = "^(?<date>[0-9]{2}/[0-9]{2}/[0-9]{4})\\s";
         private final static String DEFAULT_MESSAGE_PATTERN = "\\[\\w+\\]:\\s(?<message>.*)$";
         private final static String DEFAULT_DATE_FORMAT = "dd/MM/yyyy";
+        private final static String DEFAULT_LINE_LAYOUT = "";
         private final static String DEFAULT_OUTPUT_PATH = "output/output.log";
+        private final static String DEFAULT_THREADS_COUNT = "0";
+        private final static String DEFAULT_CHUNK_SIZE = "64";
+        private final static String DEFAULT_CHECKPOINT_PATH = "";
+        private final static String DEFAULT_INDEX_PATH = "";
+        private final static String DEFAULT_INDEX_BLOCK_SIZE = "4";
+        private final static String DEFAULT_INCLUDE_PATTERNS = "";
+        private final static String DEFAULT_EXCLUDE_PATTERNS = "";
+        private final static String DEFAULT_PRUNE_BY_DATE = "false";
+        private final static String DEFAULT_METRICS_ENABLED = "false";
+        private final static String DEFAULT_PROGRESS_INTERVAL = "10";
+        private final static String DEFAULT_DAEMON_PORT = "7071";
+        private final static String DEFAULT_AGGREGATION_MEMORY_LIMIT = "0";
+        private final static String DEFAULT_AGGREGATION_OFF_HEAP = "false";
+        private final static String DEFAULT_INPUT_CHARSET = "";
 
         private DefaultConfig() {
         }
@@ -6,6 +6,9 @@ package com.kyriba.parser.core;
 public final class Constants {
     public static final String FILTER_DATE_SEPARATOR = ";";
     public static final String GROUP_BY_SEPARATOR = ",";
+    public static final String FILTER_TERMS_SEPARATOR = "|";
+    public static final String FILTER_TERMS_FILE_PREFIX = "@";
+    public static final String FILTER_TERMS_ESCAPE = "\\";
 
     private Constants() {
     }
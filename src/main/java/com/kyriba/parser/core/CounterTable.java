@@ -0,0 +1,59 @@
+package com.kyriba.parser.core;
+
+/**
+ * Table of {@code long} counters with {@code long} keys.
+ * <p>
+ * <p>Zero key is reserved for empty slots. Implementations aren't thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public interface CounterTable {
+    /**
+     * Add delta to the counter of the key. Counter of a new key starts from zero.
+     *
+     * @param key   non-zero key.
+     * @param delta value to add.
+     * @throws IllegalArgumentException if key is zero.
+     */
+    void increment(final long key, final long delta) throws IllegalArgumentException;
+
+    /**
+     * @param key key of the counter.
+     * @return value of the counter or zero if the key is missed.
+     */
+    long get(final long key);
+
+    /**
+     * @return number of keys in the table.
+     */
+    int size();
+
+    /**
+     * Visit all counters in unspecified order.
+     *
+     * @param visitor visitor of counters.
+     */
+    void forEach(final Visitor visitor);
+
+    /**
+     * Remove all counters.
+     */
+    void clear();
+
+    /**
+     * Free memory of the table. The table must not be used after that. Does nothing by default.
+     */
+    default void release() {
+    }
+
+    /**
+     * Visitor of table counters.
+     */
+    interface Visitor {
+        /**
+         * @param key   key of the counter.
+         * @param count value of the counter.
+         */
+        void visit(long key, long count);
+    }
+}
@@ -0,0 +1,176 @@
+package com.kyriba.parser.core;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of parsed dates. Singleton.
+ * <p>
+ * <p>Maps raw date strings from log lines to numeric days, so the same date is parsed only once
+ * for {@link Filter#DATE} and {@link GroupBy} time units. The cache is cleared when it reaches its size limit.
+ * Thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public enum DateCache {
+    INSTANCE;
+
+    private static final int MAX_SIZE = 1 << 16;
+    private static final Entry UNPARSEABLE = new Entry(Entry.UNKNOWN_DAY, 0);
+    private static final String TIME_LETTERS = "HkKhamsSzZX";
+    private final Map<String, Entry> m_entries = new ConcurrentHashMap<>();
+    private volatile ThreadLocal<SimpleDateFormat> m_dateFormat;
+    private volatile boolean m_dayGranularity;
+
+    /**
+     * Set format of dates in log files. Cached values are discarded.
+     *
+     * @param dateFormat pattern for {@link SimpleDateFormat}.
+     */
+    public void setDateFormat(final String dateFormat) {
+        m_dayGranularity = !hasTimeOfDay(dateFormat);
+        m_dateFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat(dateFormat));
+        m_entries.clear();
+    }
+
+    /**
+     * Check whether dates of the format are whole days, so they can be compared by {@link Entry#getDay() days}
+     * instead of {@link Entry#getTime() time}. Formats with time of day or time zone fields aren't day granular.
+     *
+     * @return {@code true} if the format has no time of day.
+     */
+    public boolean isDayGranularity() {
+        getDateFormat();
+        return m_dayGranularity;
+    }
+
+    /**
+     * Get parsed date. The date is parsed with {@link Configuration#getDateFormatString() configured format}
+     * if it is missed in the cache.
+     *
+     * @param date date as it is written in log line.
+     * @return cached date. Day of the entry is {@link Entry#UNKNOWN_DAY} if the date cannot be parsed.
+     */
+    public Entry get(final String date) {
+        Entry entry = m_entries.get(date);
+        if (entry == null) {
+            entry = parse(date);
+            if (m_entries.size() >= MAX_SIZE) {
+                m_entries.clear();
+            }
+            m_entries.put(date, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Get number of days since epoch for the date.
+     *
+     * @param date date as it is written in log line.
+     * @return number of days or {@link Entry#UNKNOWN_DAY} if the date cannot be parsed.
+     */
+    public int getDay(final String date) {
+        return get(date).getDay();
+    }
+
+    /**
+     * Convert date to number of days since epoch in the default time zone.
+     *
+     * @param date date for conversion.
+     * @return number of days.
+     */
+    public static int toDay(final Date date) {
+        return (int) Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    private static boolean hasTimeOfDay(final String dateFormat) {
+        boolean quoted = false;
+        for (int i = 0; i < dateFormat.length(); i++) {
+            char c = dateFormat.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && TIME_LETTERS.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ThreadLocal<SimpleDateFormat> getDateFormat() {
+        ThreadLocal<SimpleDateFormat> dateFormat = m_dateFormat;
+        if (dateFormat == null) {
+            setDateFormat(Configuration.INSTANCE.getDateFormatString());
+            dateFormat = m_dateFormat;
+        }
+        return dateFormat;
+    }
+
+    private Entry parse(final String date) {
+        try {
+            Date parsed = getDateFormat().get().parse(date);
+            return new Entry(toDay(parsed), parsed.getTime());
+        } catch (ParseException e) {
+            return UNPARSEABLE;
+        }
+    }
+
+    /**
+     * Parsed date with lazily formatted values of {@link GroupBy} time units.
+     */
+    public static final class Entry {
+        /**
+         * Day of a date that cannot be parsed.
+         */
+        public static final int UNKNOWN_DAY = Integer.MIN_VALUE;
+        private final int m_day;
+        private final long m_time;
+        private final String[] m_labels;
+
+        private Entry(final int day, final long time) {
+            m_day = day;
+            m_time = time;
+            m_labels = new String[GroupBy.values().length];
+        }
+
+        /**
+         * @return number of days since epoch or {@link #UNKNOWN_DAY}.
+         */
+        public int getDay() {
+            return m_day;
+        }
+
+        /**
+         * @return milliseconds since epoch. Zero if the date wasn't parsed.
+         */
+        public long getTime() {
+            return m_time;
+        }
+
+        /**
+         * @return {@code true} if the date was parsed.
+         */
+        public boolean isValid() {
+            return m_day != UNKNOWN_DAY;
+        }
+
+        /**
+         * @return parsed date.
+         */
+        public Date toDate() {
+            return new Date(m_time);
+        }
+
+        String getLabel(final GroupBy groupBy) {
+            return m_labels[groupBy.ordinal()];
+        }
+
+        void setLabel(final GroupBy groupBy, final String label) {
+            m_labels[groupBy.ordinal()] = label;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.kyriba.parser.core;
+
+import java.util.Date;
+
+/**
+ * Range of dates for {@link Filter#DATE}. Both bounds are exclusive.
+ * Immutable.
+ * <p>
+ * <p>Dates are compared by time. If the date format has no time of day, dates are compared by days, which
+ * gives the same result. Day bounds are also used to skip files and regions, so for formats with time of day
+ * they are widened to the days before and after the range.</p>
+ *
+ * @author VMyakushin
+ */
+public final class DateRange {
+    private final long m_fromTime;
+    private final long m_toTime;
+    private final int m_fromDay;
+    private final int m_toDay;
+    private final boolean m_dayGranularity;
+
+    /**
+     * Constructor.
+     *
+     * @param fromTime       milliseconds since epoch. Exclusive.
+     * @param toTime         milliseconds since epoch. Exclusive.
+     * @param dayGranularity {@code true} if compared dates have no time of day.
+     * @see DateCache#isDayGranularity()
+     */
+    public DateRange(final long fromTime, final long toTime, final boolean dayGranularity) {
+        m_fromTime = fromTime;
+        m_toTime = toTime;
+        m_dayGranularity = dayGranularity;
+        int fromDay = DateCache.toDay(new Date(fromTime));
+        int toDay = DateCache.toDay(new Date(toTime));
+        m_fromDay = dayGranularity ? fromDay : fromDay - 1;
+        m_toDay = dayGranularity ? toDay : toDay + 1;
+    }
+
+    /**
+     * @param date parsed date.
+     * @return {@code true} if the date is valid, after lower bound and before upper bound.
+     */
+    public boolean contains(final DateCache.Entry date) {
+        if (!date.isValid()) {
+            return false;
+        }
+        if (m_dayGranularity) {
+            int day = date.getDay();
+            return day > m_fromDay && day < m_toDay;
+        }
+        long time = date.getTime();
+        return time > m_fromTime && time < m_toTime;
+    }
+
+    /**
+     * @return the last day before the range. Lines of this day and earlier days don't match.
+     */
+    public int getFromDay() {
+        return m_fromDay;
+    }
+
+    /**
+     * @return the first day after the range. Lines of this day and later days don't match.
+     */
+    public int getToDay() {
+        return m_toDay;
+    }
+}
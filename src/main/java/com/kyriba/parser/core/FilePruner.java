@@ -0,0 +1,170 @@
+package com.kyriba.parser.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Skips files that cannot contain lines of the DATE filter range. Singleton.
+ * <p>
+ * <p>Bounds of a file are dates of its first and last lines with date. Only the head and the tail of the file are read.
+ * Files must be written chronologically, so all lines of a file are between its bounds.
+ * Bounds are cached while size and modification time of the file are the same.</p>
+ * <p>
+ * <p>Compressed files and files without dates in the head or the tail are never skipped.
+ * Thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public enum FilePruner {
+    INSTANCE;
+
+    private static final Logger logger = Logger.getLogger(FilePruner.class.getName());
+    private static final int MAX_SIZE = 1 << 16;
+    private static final int MIN_WINDOW = 1 << 16;
+    private static final int MAX_WINDOW = 1 << 20;
+    private final Map<String, Bounds> m_bounds = new ConcurrentHashMap<>();
+
+    /**
+     * Remove files that cannot contain lines of the DATE filter range.
+     *
+     * @param files   input files.
+     * @param options user defined input parameters.
+     * @return files that can contain matched lines in the original order. The same list if DATE filter isn't specified.
+     * @throws IOException in case of reading errors.
+     */
+    public List<File> prune(final List<File> files, final ParseOptions options) throws IOException {
+        DateRange range = options.getDateRange();
+        if (range == null) {
+            return files;
+        }
+        List<File> result = new ArrayList<>(files.size());
+        long prunedBytes = 0;
+        long totalBytes = 0;
+        for (File file : files) {
+            long size = file.length();
+            totalBytes += size;
+            Bounds bounds = getBounds(file);
+            if (bounds.isKnown() && (bounds.m_lastDay <= range.getFromDay() || bounds.m_firstDay >= range.getToDay())) {
+                prunedBytes += size;
+            } else {
+                result.add(file);
+            }
+        }
+        logger.log(Level.INFO, String.format("%d of %d files (%d of %d bytes) were pruned by DATE filter",
+                files.size() - result.size(), files.size(), prunedBytes, totalBytes));
+        return result;
+    }
+
+    private Bounds getBounds(final File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+        Bounds bounds = m_bounds.get(key);
+        if (bounds == null || bounds.m_size != size || bounds.m_lastModified != lastModified) {
+            bounds = readBounds(file, size, lastModified);
+            if (m_bounds.size() >= MAX_SIZE) {
+                m_bounds.clear();
+            }
+            m_bounds.put(key, bounds);
+        }
+        return bounds;
+    }
+
+    private static Bounds readBounds(final File file, final long size, final long lastModified) throws IOException {
+        if (ParallelGzipInputStream.isCompressed(file)) {
+            return new Bounds(size, lastModified, DateCache.Entry.UNKNOWN_DAY, DateCache.Entry.UNKNOWN_DAY);
+        }
+        LineExtractor extractor = new LineExtractor();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new Bounds(size, lastModified, findBound(extractor, channel, size, false), findBound(extractor, channel, size, true));
+        }
+    }
+
+    /**
+     * Find day of the first or the last line with date. Window of the head or the tail grows until a date is found.
+     *
+     * @return day or {@link DateCache.Entry#UNKNOWN_DAY} if there are no dates in the largest window.
+     */
+    private static int findBound(final LineExtractor extractor, final FileChannel channel, final long size,
+                                 final boolean fromEnd) throws IOException {
+        for (long window = MIN_WINDOW; ; window *= 4) {
+            long start = fromEnd ? Math.max(0, size - window) : 0;
+            long end = fromEnd ? size : Math.min(window, size);
+            int day = findDay(extractor, readLines(channel, start, end), fromEnd);
+            if (day != DateCache.Entry.UNKNOWN_DAY || window >= size || window >= MAX_WINDOW) {
+                return day;
+            }
+        }
+    }
+
+    /**
+     * Read complete lines of the region. Line that starts before the region is dropped.
+     */
+    private static List<String> readLines(final FileChannel channel, final long start, final long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+            //read the whole region
+        }
+        byte[] bytes = buffer.array();
+        List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        if (start > 0) { //skip the rest of the line started before the region
+            while (lineStart < buffer.position() && bytes[lineStart] != '\n') {
+                lineStart++;
+            }
+            lineStart++;
+        }
+        for (int i = lineStart; i <= buffer.position(); i++) {
+            if (i == buffer.position() || bytes[i] == '\n') {
+                int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+                if (lineEnd > lineStart) {
+                    lines.add(new String(bytes, lineStart, lineEnd - lineStart, Configuration.INSTANCE.getInputCharset()));
+                }
+                lineStart = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    private static int findDay(final LineExtractor extractor, final List<String> lines, final boolean fromEnd) {
+        for (int i = 0; i < lines.size(); i++) {
+            extractor.extract(lines.get(fromEnd ? lines.size() - 1 - i : i));
+            String date = extractor.getField(Filter.DATE);
+            int day = date != null ? DateCache.INSTANCE.getDay(date) : DateCache.Entry.UNKNOWN_DAY;
+            if (day != DateCache.Entry.UNKNOWN_DAY) {
+                return day;
+            }
+        }
+        return DateCache.Entry.UNKNOWN_DAY;
+    }
+
+    /**
+     * Days of the first and the last lines of a file.
+     */
+    private static final class Bounds {
+        private final long m_size;
+        private final long m_lastModified;
+        private final int m_firstDay;
+        private final int m_lastDay;
+
+        private Bounds(final long size, final long lastModified, final int firstDay, final int lastDay) {
+            m_size = size;
+            m_lastModified = lastModified;
+            m_firstDay = firstDay;
+            m_lastDay = lastDay;
+        }
+
+        private boolean isKnown() {
+            return m_firstDay != DateCache.Entry.UNKNOWN_DAY && m_lastDay != DateCache.Entry.UNKNOWN_DAY;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.kyriba.parser.core;
+
+import java.io.File;
+
+/**
+ * Continuous range of bytes of a file that can be parsed independently from other ranges.
+ *
+ * @author VMyakushin
+ */
+public final class FileRegion {
+    private final File m_file;
+    private final long m_start;
+    private final long m_end;
+
+    /**
+     * Constructor.
+     *
+     * @param file  file that contains the region.
+     * @param start position of the first byte of the region.
+     * @param end   position next to the last byte of the region.
+     */
+    public FileRegion(final File file, final long start, final long end) {
+        m_file = file;
+        m_start = start;
+        m_end = end;
+    }
+
+    /**
+     * @return file that contains the region.
+     */
+    public File getFile() {
+        return m_file;
+    }
+
+    /**
+     * @return position of the first byte of the region.
+     */
+    public long getStart() {
+        return m_start;
+    }
+
+    /**
+     * @return position next to the last byte of the region.
+     */
+    public long getEnd() {
+        return m_end;
+    }
+
+    /**
+     * @return number of bytes in the region.
+     */
+    public long getLength() {
+        return m_end - m_start;
+    }
+
+    @Override
+    public String toString() {
+        return m_file + "[" + m_start + ", " + m_end + ")";
+    }
+}
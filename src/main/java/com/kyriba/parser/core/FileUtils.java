@@ -1,13 +1,8 @@
 package com.kyriba.parser.core;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Writer;
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -25,20 +20,16 @@ public final class FileUtils {
 
     /**
      * Get list of files with specified path.
+     * Directory is walked recursively, files are selected by include\exclude patterns from {@link Configuration}.
      * List will contains only one record if specified file is regular file (not a directory).
      *
      * @param file representation of file and directory pathnames.
-     * @return list of files. Can be empty.
+     * @return list of regular files sorted by path. Can be empty.
+     * @throws IllegalArgumentException if a pattern in configuration is invalid.
      */
-    public static List<File> getFiles(final File file) {
-        List<File> fileList = new ArrayList<>();
-        if (file.isDirectory()) {
-            File[] files = file.listFiles();
-            fileList.addAll(Arrays.asList(files));
-        } else {
-            fileList.add(file);
-        }
-        logger.log(Level.INFO, String.format("%o files was found in %s", fileList.size(), file.getAbsolutePath()));
+    public static List<File> getFiles(final File file) throws IllegalArgumentException {
+        List<File> fileList = new FileWalker(Configuration.INSTANCE.getIncludePatterns(), Configuration.INSTANCE.getExcludePatterns()).walk(file);
+        logger.log(Level.INFO, String.format("%d files was found in %s", fileList.size(), file.getAbsolutePath()));
         return fileList;
     }
 
@@ -64,4 +55,75 @@ public final class FileUtils {
             //nothing
         }
     }
+
+    /**
+     * Open stream that reads bytes of the region only.
+     *
+     * @param region region of a file.
+     * @return unbuffered stream positioned at the region start.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static InputStream openRegion(final FileRegion region) throws IOException {
+        FileInputStream in = new FileInputStream(region.getFile());
+        try {
+            in.getChannel().position(region.getStart());
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new RegionInputStream(in, region.getLength());
+    }
+
+    /**
+     * Stream that ends after the specified number of bytes.
+     */
+    private static final class RegionInputStream extends FilterInputStream {
+        private long m_remaining;
+
+        private RegionInputStream(final InputStream in, final long length) {
+            super(in);
+            m_remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (m_remaining <= 0) {
+                return -1;
+            }
+            int result = in.read();
+            if (result != -1) {
+                m_remaining--;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (m_remaining <= 0) {
+                return -1;
+            }
+            int result = in.read(b, off, (int) Math.min(len, m_remaining));
+            if (result > 0) {
+                m_remaining -= result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long result = in.skip(Math.min(n, m_remaining));
+            m_remaining -= result;
+            return result;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), m_remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package com.kyriba.parser.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds regular files in a directory tree.
+ * <p>
+ * <p>Subdirectories are walked in parallel by the common fork-join pool. Symbolic links to directories aren't followed.
+ * Files are selected by glob patterns (see {@link FileSystem#getPathMatcher(String)}).
+ * A pattern matches a file if it matches the file name or the path relative to the walked directory,
+ * e.g. {@code *.log} matches log files at any depth and {@code archive/**} matches everything in the archive directory.</p>
+ * <p>
+ * <p>Thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class FileWalker {
+    private static final Logger logger = Logger.getLogger(FileWalker.class.getName());
+    private static final String PATTERN_SEPARATOR = ",";
+    private final List<PathMatcher> m_includes;
+    private final List<PathMatcher> m_excludes;
+
+    /**
+     * Constructor.
+     *
+     * @param includes comma separated glob patterns of files to include. All files are included if it's empty.
+     * @param excludes comma separated glob patterns of files to exclude.
+     * @throws IllegalArgumentException if a pattern is invalid.
+     */
+    public FileWalker(final String includes, final String excludes) throws IllegalArgumentException {
+        m_includes = compile(includes);
+        m_excludes = compile(excludes);
+    }
+
+    /**
+     * Find files.
+     *
+     * @param file regular file or directory.
+     * @return files sorted by path. Single file if a regular file is specified, even if it doesn't match the patterns.
+     */
+    public List<File> walk(final File file) {
+        if (!file.isDirectory()) {
+            return file.isFile() ? Collections.singletonList(file) : Collections.<File>emptyList();
+        }
+        Path root = file.toPath();
+        List<Path> paths = new DirectoryTask(root, root).invoke();
+        Collections.sort(paths);
+        List<File> files = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            files.add(path.toFile());
+        }
+        return files;
+    }
+
+    /**
+     * Check that the file would be found by {@link #walk(File)}, e.g. for a file reported by {@link WatchService}.
+     *
+     * @param root regular file or directory that is walked.
+     * @param file file in the directory tree.
+     * @return {@code true} if the file is the walked regular file or matches the patterns.
+     */
+    public boolean accepts(final File root, final File file) {
+        if (!root.isDirectory()) {
+            return root.getAbsoluteFile().equals(file.getAbsoluteFile());
+        }
+        return accept(root.getAbsoluteFile().toPath(), file.getAbsoluteFile().toPath());
+    }
+
+    private boolean accept(final Path root, final Path path) {
+        Path relative = root.relativize(path);
+        return (m_includes.isEmpty() || matches(m_includes, relative)) && !matches(m_excludes, relative);
+    }
+
+    private static boolean matches(final List<PathMatcher> matchers, final Path relative) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative) || matcher.matches(relative.getFileName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PathMatcher> compile(final String patterns) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String pattern : patterns.split(PATTERN_SEPARATOR)) {
+            if (!pattern.trim().isEmpty()) {
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern.trim()));
+            }
+        }
+        return matchers;
+    }
+
+    /**
+     * Lists a directory and forks a task for every subdirectory.
+     */
+    private final class DirectoryTask extends RecursiveTask<List<Path>> {
+        private static final long serialVersionUID = 1L;
+        private final Path m_root;
+        private final Path m_directory;
+
+        private DirectoryTask(final Path root, final Path directory) {
+            m_root = root;
+            m_directory = directory;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            List<Path> files = new ArrayList<>();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(m_directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        subdirectories.add(new DirectoryTask(m_root, entry));
+                    } else if (Files.isRegularFile(entry) && accept(m_root, entry)) {
+                        files.add(entry);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                logger.log(Level.WARNING, "Directory cannot be listed and will be skipped: " + m_directory, e);
+            }
+            for (DirectoryTask task : ForkJoinTask.invokeAll(subdirectories)) {
+                files.addAll(task.join());
+            }
+            return files;
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.kyriba.parser.core;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,15 +21,23 @@ public enum Filter {
         public boolean match(String currentValue, String filterValue) {
             return currentValue.equals(filterValue);
         }
+
+        @Override
+        public boolean match(LineExtractor fields, ParseOptions options) {
+            return fields.isFieldEqual(this, options.getFilterValue(this));
+        }
+
+        @Override
+        public TermMatcher compileTerms(List<String> terms) {
+            return new TermSet(terms);
+        }
     },
     DATE {
-        private SimpleDateFormat m_dateFormat;
-
         @Override
         public void compile() {
             m_patternGroupName = toString().toLowerCase();
             m_pattern = Pattern.compile(Configuration.INSTANCE.getDatePattern());
-            m_dateFormat = new SimpleDateFormat(Configuration.INSTANCE.getDateFormatString());
+            DateCache.INSTANCE.setDateFormat(Configuration.INSTANCE.getDateFormatString());
         }
 
         @Override
@@ -40,18 +46,33 @@ public enum Filter {
             if (filterRange.length < 2) {
                 return false;
             }
-            Date filterDateFrom;
-            Date filterDateTo;
-            Date currentDate;
-            try {
-                filterDateFrom = m_dateFormat.parse(filterRange[0]);
-                filterDateTo = m_dateFormat.parse(filterRange[1]);
-                currentDate = m_dateFormat.parse(currentValue);
-            } catch (ParseException e) {
+            DateCache.Entry filterDateFrom = DateCache.INSTANCE.get(filterRange[0]);
+            DateCache.Entry filterDateTo = DateCache.INSTANCE.get(filterRange[1]);
+            if (!filterDateFrom.isValid() || !filterDateTo.isValid()) {
                 return false;
             }
+            return match(currentValue, new DateRange(filterDateFrom.getTime(), filterDateTo.getTime(),
+                    DateCache.INSTANCE.isDayGranularity()));
+        }
+
+        @Override
+        public boolean match(String currentValue, ParseOptions options) {
+            DateRange range = options.getDateRange();
+            return range != null ? match(currentValue, range) : match(currentValue, options.getFilterValue(this));
+        }
+
+        @Override
+        public boolean match(LineExtractor fields, ParseOptions options) {
+            DateRange range = options.getDateRange();
+            if (range == null) {
+                return super.match(fields, options);
+            }
+            DateCache.Entry date = fields.getDate();
+            return date != null && range.contains(date);
+        }
 
-            return currentDate.after(filterDateFrom) && currentDate.before(filterDateTo);
+        private boolean match(String currentValue, DateRange range) {
+            return range.contains(DateCache.INSTANCE.get(currentValue));
         }
     },
     MESSAGE {
@@ -65,18 +86,31 @@ public enum Filter {
         public boolean match(String currentValue, String filterValue) {
             return currentValue.contains(filterValue);
         }
+
+        @Override
+        public boolean match(LineExtractor fields, ParseOptions options) {
+            return fields.fieldContains(this, options.getFilterValue(this));
+        }
+
+        @Override
+        public TermMatcher compileTerms(List<String> terms) {
+            return new TermAutomaton(terms);
+        }
     };
 
     protected String m_patternGroupName;
     protected Pattern m_pattern;
 
     /**
-     * Compile patterns based on configuration for all filters.
+     * Compile patterns based on configuration for all filters. {@link LineLayout Layout} of lines is set as well.
+     *
+     * @throws IllegalArgumentException if a pattern or the layout is invalid.
      */
-    public static void compileAll() {
+    public static void compileAll() throws IllegalArgumentException {
         for (Filter filter : values()) {
             filter.compile();
         }
+        LineLayout.INSTANCE.setLayout(Configuration.INSTANCE.getLineLayout());
     }
 
     /**
@@ -93,6 +127,43 @@ public enum Filter {
      */
     public abstract boolean match(final String currentValue, final String filterValue);
 
+    /**
+     * Match value against the filter value from options.
+     * Filters can use values precompiled by options instead of parsing of the filter value.
+     *
+     * @param currentValue value parsed from line according to filter pattern.
+     * @param options      user defined input parameters that contain the filter.
+     * @return true if values are match.
+     */
+    public boolean match(final String currentValue, final ParseOptions options) {
+        return match(currentValue, options.getFilterValue(this));
+    }
+
+    /**
+     * Match field of the current line against the filter value from options.
+     * Filters can compare the field in place instead of its extraction as a string.
+     *
+     * @param fields  fields extracted from text line.
+     * @param options user defined input parameters that contain the filter.
+     * @return true if the line contains the field and values are match.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    public boolean match(final LineExtractor fields, final ParseOptions options) throws IllegalArgumentException {
+        String currentValue = fields.getField(this);
+        return currentValue != null && match(currentValue, options);
+    }
+
+    /**
+     * Create matcher of a field against several terms according to the filter rules.
+     *
+     * @param terms distinct non-empty terms.
+     * @return matcher that finds terms matched by a field.
+     * @throws IllegalArgumentException if the filter doesn't support several terms.
+     */
+    public TermMatcher compileTerms(final List<String> terms) throws IllegalArgumentException {
+        throw new IllegalArgumentException(this + " filter doesn't support several values");
+    }
+
     /**
      * @return group name for {@link Matcher#group(String)}.
      */
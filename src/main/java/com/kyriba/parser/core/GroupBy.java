@@ -1,10 +1,6 @@
 package com.kyriba.parser.core;
 
-import java.text.DateFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.regex.Matcher;
 
 /**
  * Possible Group By conditions.
@@ -14,66 +10,91 @@ import java.util.regex.Matcher;
 public enum GroupBy {
     USERNAME {
         @Override
-        public void processKey(String line, GroupingKey key) {
-            Matcher matcher = Filter.USERNAME.getPattern().matcher(line);
-            if (matcher.find()) {
-                key.add(this, matcher.group(Filter.USERNAME.getPatternGroupName()));
-            }
+        public String getValue(LineExtractor fields) {
+            return fields.getField(Filter.USERNAME);
+        }
+
+        @Override
+        public int getId(LineExtractor fields, ValueDictionary dictionary) {
+            return fields.getFieldId(Filter.USERNAME, dictionary);
         }
     },
     YEAR {
-        private final SimpleDateFormat resultFormat = new SimpleDateFormat("yyyy");
+        private final ThreadLocal<SimpleDateFormat> resultFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy"));
 
         @Override
-        public void processKey(String line, GroupingKey key) {
-            GroupBy.addTimeUnitToKey(line, key, resultFormat, this);
+        public String getValue(LineExtractor fields) {
+            return GroupBy.getTimeUnit(fields, resultFormat.get(), this);
         }
     },
     MONTH {
-        private final SimpleDateFormat resultFormat = new SimpleDateFormat("MMM");
+        private final ThreadLocal<SimpleDateFormat> resultFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat("MMM"));
 
         @Override
-        public void processKey(String line, GroupingKey key) {
-            GroupBy.addTimeUnitToKey(line, key, resultFormat, this);
+        public String getValue(LineExtractor fields) {
+            return GroupBy.getTimeUnit(fields, resultFormat.get(), this);
         }
     },
     DAY {
-        private final SimpleDateFormat resultFormat = new SimpleDateFormat("MM/dd/yyyy");
+        private final ThreadLocal<SimpleDateFormat> resultFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat("MM/dd/yyyy"));
 
         @Override
-        public void processKey(String line, GroupingKey key) {
-            GroupBy.addTimeUnitToKey(line, key, resultFormat, this);
+        public String getValue(LineExtractor fields) {
+            return GroupBy.getTimeUnit(fields, resultFormat.get(), this);
         }
     },
     HOUR {
-        private final SimpleDateFormat resultFormat = new SimpleDateFormat("hh a");
+        private final ThreadLocal<SimpleDateFormat> resultFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat("hh a"));
 
         @Override
-        public void processKey(String line, GroupingKey key) {
-            GroupBy.addTimeUnitToKey(line, key, resultFormat, this);
+        public String getValue(LineExtractor fields) {
+            return GroupBy.getTimeUnit(fields, resultFormat.get(), this);
         }
     };
 
-    private static void addTimeUnitToKey(final String line, final GroupingKey key, final SimpleDateFormat resultFormat, final GroupBy groupBy) {
-        DateFormat parserDateFormat = Configuration.INSTANCE.getDateFormat();
-        Matcher matcher = Filter.DATE.getPattern().matcher(line);
-        if (matcher.find()) {
-            String dateString = matcher.group(Filter.DATE.getPatternGroupName());
-            try {
-                Date date = parserDateFormat.parse(dateString);
-                dateString = resultFormat.format(date);
-                key.add(groupBy, dateString);
-            } catch (ParseException e) {
-                //nothing. wrong date, skip it.
-            }
+    private static String getTimeUnit(final LineExtractor fields, final SimpleDateFormat resultFormat, final GroupBy groupBy) {
+        DateCache.Entry date = fields.getDate();
+        if (date == null || !date.isValid()) {
+            return null; //wrong date, skip it.
+        }
+        String value = date.getLabel(groupBy);
+        if (value == null) {
+            value = resultFormat.format(date.toDate());
+            date.setLabel(groupBy, value);
         }
+        return value;
     }
 
     /**
-     * Method calculates some value from given line and add this value to key.
+     * Method calculates some value from fields of a line and add this value to key.
      *
-     * @param line text line.
-     * @param key  key that helps to aggregate statistic for given line.
+     * @param fields fields extracted from text line.
+     * @param key    key that helps to aggregate statistic for given line.
      */
-    public abstract void processKey(String line, GroupingKey key);
+    public void processKey(LineExtractor fields, GroupingKey key) {
+        String value = getValue(fields);
+        if (value != null) {
+            key.add(this, value);
+        }
+    }
+
+    /**
+     * Method calculates value of the condition from fields of a line.
+     *
+     * @param fields fields extracted from text line.
+     * @return value or {@code null} if the line doesn't contain the value.
+     */
+    public abstract String getValue(LineExtractor fields);
+
+    /**
+     * Method encodes value of the condition from fields of a line.
+     *
+     * @param fields     fields extracted from text line.
+     * @param dictionary dictionary of condition values.
+     * @return positive identifier or zero if the line doesn't contain the value.
+     */
+    public int getId(LineExtractor fields, ValueDictionary dictionary) {
+        String value = getValue(fields);
+        return value != null ? dictionary.getId(value) : 0;
+    }
 }
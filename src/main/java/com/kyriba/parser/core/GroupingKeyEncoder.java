@@ -0,0 +1,182 @@
+package com.kyriba.parser.core;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Packs values of grouping conditions into a single {@code long} key.
+ * <p>
+ * <p>Every condition value is encoded to an identifier by its own {@link ValueDictionary}.
+ * Identifiers occupy fixed ranges of bits: time units get as many bits as they need for years of logs,
+ * {@link GroupBy#USERNAME} gets all remaining bits. Zero identifier means that the condition has no value,
+ * so zero key is an empty key.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class GroupingKeyEncoder {
+    private static final int MAX_ID_BITS = 31;
+    private static final Map<GroupBy, Integer> TIME_UNIT_BITS = new EnumMap<>(GroupBy.class);
+
+    static {
+        TIME_UNIT_BITS.put(GroupBy.YEAR, 8);
+        TIME_UNIT_BITS.put(GroupBy.MONTH, 5);
+        TIME_UNIT_BITS.put(GroupBy.DAY, 17);
+        TIME_UNIT_BITS.put(GroupBy.HOUR, 6);
+    }
+
+    private final GroupBy[] m_conditions;
+    private final ValueDictionary[] m_dictionaries;
+    private final int[] m_shifts;
+    private final long[] m_maxIds;
+
+    /**
+     * Constructor.
+     *
+     * @param conditions grouping conditions that can be encoded.
+     */
+    public GroupingKeyEncoder(final Set<GroupBy> conditions) {
+        int count = GroupBy.values().length;
+        m_conditions = conditions.toArray(new GroupBy[0]);
+        m_dictionaries = new ValueDictionary[count];
+        m_shifts = new int[count];
+        m_maxIds = new long[count];
+
+        int usernameBits = Long.SIZE;
+        for (GroupBy condition : conditions) {
+            usernameBits -= TIME_UNIT_BITS.getOrDefault(condition, 0);
+        }
+        int shift = 0;
+        for (GroupBy condition : conditions) {
+            int bits = TIME_UNIT_BITS.getOrDefault(condition, usernameBits);
+            m_dictionaries[condition.ordinal()] = new ValueDictionary();
+            m_shifts[condition.ordinal()] = shift;
+            m_maxIds[condition.ordinal()] = (1L << Math.min(bits, MAX_ID_BITS)) - 1;
+            shift += bits;
+        }
+    }
+
+    /**
+     * Add value of the condition to the packed key.
+     *
+     * @param key       packed key without value of the condition.
+     * @param condition grouping condition.
+     * @param value     value of the condition.
+     * @return packed key with the value.
+     * @throws IllegalArgumentException if the condition isn't supported by the encoder.
+     * @throws IllegalStateException    if the condition has too many different values.
+     */
+    public long encode(final long key, final GroupBy condition, final String value)
+            throws IllegalArgumentException, IllegalStateException {
+        return pack(key, condition, getDictionary(condition).getId(value));
+    }
+
+    /**
+     * Add value of the condition from fields of a line to the packed key.
+     * Known values are encoded without creation of strings.
+     *
+     * @param key       packed key without value of the condition.
+     * @param condition grouping condition.
+     * @param fields    fields extracted from text line.
+     * @return packed key with the value. The key is unchanged if the line doesn't contain the value.
+     * @throws IllegalArgumentException if the condition isn't supported by the encoder.
+     * @throws IllegalStateException    if the condition has too many different values.
+     */
+    public long encode(final long key, final GroupBy condition, final LineExtractor fields)
+            throws IllegalArgumentException, IllegalStateException {
+        return pack(key, condition, condition.getId(fields, getDictionary(condition)));
+    }
+
+    /**
+     * Pack the key.
+     *
+     * @param key grouping key.
+     * @return packed key. Zero for empty key.
+     */
+    public long encode(final GroupingKey key) {
+        long packed = 0;
+        for (GroupBy condition : GroupBy.values()) {
+            String value = key.getConditionValue(condition);
+            if (value != null) {
+                packed = encode(packed, condition, value);
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Unpack the key.
+     *
+     * @param packed key returned by this encoder.
+     * @return grouping key.
+     */
+    public GroupingKey decode(final long packed) {
+        GroupingKey key = new GroupingKey();
+        for (GroupBy condition : m_conditions) {
+            int index = condition.ordinal();
+            int id = (int) ((packed >>> m_shifts[index]) & m_maxIds[index]);
+            if (id != 0) {
+                key.add(condition, m_dictionaries[index].getValue(id));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Create translation of keys packed by other encoder to keys of this encoder.
+     * Every value of the other encoder is encoded once, when the translation is created,
+     * so keys are translated by bit operations and lookups in identifier tables.
+     * The translation doesn't know values added to the other encoder later.
+     *
+     * @param source encoder of translated keys.
+     * @return translation of packed keys.
+     * @throws IllegalArgumentException if a condition of the source isn't supported by this encoder.
+     * @throws IllegalStateException    if a condition has too many different values.
+     */
+    public LongUnaryOperator getTranslation(final GroupingKeyEncoder source)
+            throws IllegalArgumentException, IllegalStateException {
+        int[] indexes = new int[source.m_conditions.length];
+        int[][] ids = new int[source.m_conditions.length][];
+        for (int i = 0; i < indexes.length; i++) {
+            GroupBy condition = source.m_conditions[i];
+            ValueDictionary sourceDictionary = source.m_dictionaries[condition.ordinal()];
+            ValueDictionary dictionary = getDictionary(condition);
+            indexes[i] = condition.ordinal();
+            ids[i] = new int[sourceDictionary.size() + 1];
+            for (int id = 1; id < ids[i].length; id++) {
+                ids[i][id] = dictionary.getId(sourceDictionary.getValue(id));
+            }
+            pack(0, condition, dictionary.size()); //the largest identifier must fit into its bits.
+        }
+        return packed -> {
+            long key = 0;
+            for (int i = 0; i < indexes.length; i++) {
+                int index = indexes[i];
+                int id = (int) ((packed >>> source.m_shifts[index]) & source.m_maxIds[index]);
+                if (id != 0) {
+                    key |= (long) ids[i][id] << m_shifts[index];
+                }
+            }
+            return key;
+        };
+    }
+
+    private ValueDictionary getDictionary(final GroupBy condition) throws IllegalArgumentException {
+        ValueDictionary dictionary = m_dictionaries[condition.ordinal()];
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Grouping condition isn't supported by the encoder: " + condition);
+        }
+        return dictionary;
+    }
+
+    private long pack(final long key, final GroupBy condition, final long id) throws IllegalStateException {
+        int index = condition.ordinal();
+        if (id > m_maxIds[index]) {
+            throw new IllegalStateException("Too many different values of grouping condition " + condition);
+        }
+        return key | (id << m_shifts[index]);
+    }
+}
@@ -0,0 +1,135 @@
+package com.kyriba.parser.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * HyperLogLog sketch that estimates number of distinct items of a stream.
+ * <p>
+ * <p>The sketch has {@code 2^precision} one-byte registers, so memory is fixed and doesn't depend on number of items.
+ * Relative standard error of the estimate is {@code 1.04 / sqrt(2^precision)}, e.g. 1.6% for precision 12.
+ * Small cardinalities are estimated by linear counting.</p>
+ * <p>
+ * <p>Sketches of different parts of a stream are {@link #merge(HyperLogLog) merged} without loss of accuracy,
+ * the result is the same as a sketch of the whole stream.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class HyperLogLog {
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+    private final int m_precision;
+    private final byte[] m_registers;
+
+    /**
+     * Constructor.
+     *
+     * @param precision number of index bits, from {@value #MIN_PRECISION} to {@value #MAX_PRECISION}.
+     * @throws IllegalArgumentException if precision is out of range.
+     */
+    public HyperLogLog(final int precision) throws IllegalArgumentException {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision is out of range: " + precision);
+        }
+        m_precision = precision;
+        m_registers = new byte[1 << precision];
+    }
+
+    /**
+     * Add the item.
+     *
+     * @param item item.
+     */
+    public void add(final String item) {
+        long hash = BloomFilter.hash(item);
+        int index = (int) (hash >>> (Long.SIZE - m_precision));
+        int rank = Long.numberOfLeadingZeros((hash << m_precision) | (1L << (m_precision - 1))) + 1;
+        if (rank > m_registers[index]) {
+            m_registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Merge other sketch into this one.
+     *
+     * @param other sketch of other part of the stream. Stays unchanged.
+     * @throws IllegalArgumentException if sketches have different precision.
+     */
+    public void merge(final HyperLogLog other) throws IllegalArgumentException {
+        if (other.m_precision != m_precision) {
+            throw new IllegalArgumentException("Sketches have different precision: " + m_precision + ", " + other.m_precision);
+        }
+        for (int i = 0; i < m_registers.length; i++) {
+            if (other.m_registers[i] > m_registers[i]) {
+                m_registers[i] = other.m_registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return estimated number of distinct items.
+     */
+    public long estimate() {
+        int count = m_registers.length;
+        double sum = 0;
+        int empty = 0;
+        for (byte register : m_registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double estimate = 0.7213 / (1 + 1.079 / count) * count * count / sum;
+        if (estimate <= 2.5 * count && empty > 0) {
+            estimate = count * Math.log((double) count / empty); //linear counting
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return relative standard error of the estimate.
+     */
+    public double getStandardError() {
+        return getStandardError(m_precision);
+    }
+
+    /**
+     * @param precision number of index bits.
+     * @return relative standard error of estimates of sketches with the precision.
+     */
+    public static double getStandardError(final int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * Write sketch to the output.
+     *
+     * @param out output.
+     * @throws IOException in case of writing errors.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeByte(m_precision);
+        out.write(m_registers);
+    }
+
+    /**
+     * Read sketch written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in input.
+     * @return sketch.
+     * @throws IOException in case of reading errors.
+     */
+    public static HyperLogLog readFrom(final DataInput in) throws IOException {
+        HyperLogLog sketch;
+        try {
+            sketch = new HyperLogLog(in.readByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Wrong sketch", e);
+        }
+        in.readFully(sketch.m_registers);
+        return sketch;
+    }
+}
@@ -0,0 +1,256 @@
+package com.kyriba.parser.core;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent storage of file indexes.
+ * <p>
+ * <p>Indexes are built in advance by {@link #build(File)} and stored as sidecar files in the storage directory,
+ * so directories with logs are never modified and indexes are never taken for logs.
+ * Parsers use indexes to {@link #plan(File, ParseOptions) plan} which regions of a file must be scanned:
+ * {@link TimeIndex} narrows a file to lines of the DATE filter range and {@link UsernameIndex} skips blocks
+ * that don't contain the user of the USERNAME filter.</p>
+ * <p>
+ * <p>Thread-safe for different input files.</p>
+ *
+ * @author VMyakushin
+ */
+public class IndexStore {
+    private static final Logger logger = Logger.getLogger(IndexStore.class.getName());
+    private static final int MAGIC = 0x4C415449;
+    private static final int VERSION = 1;
+    private static final String TIME_INDEX_EXTENSION = ".tidx";
+    private static final String USERNAME_INDEX_EXTENSION = ".uidx";
+    private static final long DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+    private final File m_directory;
+    private final long m_blockSize;
+
+    /**
+     * Constructor. Directory is created if it doesn't exist.
+     *
+     * @param directory storage directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    public IndexStore(final File directory) throws IOException {
+        this(directory, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor. Directory is created if it doesn't exist.
+     *
+     * @param directory storage directory.
+     * @param blockSize approximate size of a block of {@link UsernameIndex} built by this storage.
+     * @throws IOException              if the directory cannot be created.
+     * @throws IllegalArgumentException if block size is less than one.
+     */
+    public IndexStore(final File directory, final long blockSize) throws IOException, IllegalArgumentException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        m_directory = directory;
+        m_blockSize = blockSize;
+        Files.createDirectories(directory.toPath());
+    }
+
+    /**
+     * Build and save all indexes of the file.
+     * Patterns of all filters must be {@link Filter#compileAll() compiled} before.
+     *
+     * @param file log file.
+     * @throws IOException in case of reading\writing errors.
+     */
+    public void build(final File file) throws IOException {
+        long lastModified = file.lastModified();
+        LineExtractor extractor = new LineExtractor();
+        TailReader reader = new TailReader();
+        TimeIndex.Builder timeIndex = new TimeIndex.Builder();
+        UsernameIndex.Builder usernameIndex = new UsernameIndex.Builder(m_blockSize);
+        long size;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            reader.read(channel, 0, (bytes, offset, length) ->
+                    addLine(extractor, bytes, offset, length, reader.getLineStart(), timeIndex, usernameIndex), true);
+        }
+
+        TimeIndex time = timeIndex.build(size, lastModified);
+        if (!time.isSorted()) {
+            logger.log(Level.INFO, "File is not sorted by date, time index cannot be used for it: " + file);
+        }
+        save(file, TIME_INDEX_EXTENSION, time::writeTo);
+        save(file, USERNAME_INDEX_EXTENSION, usernameIndex.build(size, lastModified)::writeTo);
+    }
+
+    private static void addLine(final LineExtractor extractor, final byte[] bytes, final int lineOffset, final int length,
+                                final long offset, final TimeIndex.Builder timeIndex, final UsernameIndex.Builder usernameIndex) {
+        extractor.extract(bytes, lineOffset, length);
+        DateCache.Entry date = extractor.getDate();
+        timeIndex.add(date != null ? date.getDay() : DateCache.Entry.UNKNOWN_DAY, offset);
+        usernameIndex.add(extractor.getField(Filter.USERNAME), offset);
+    }
+
+    /**
+     * Get regions of the file that must be scanned to find all lines matched to the filters.
+     * Whole file is scanned if there are no valid indexes for it.
+     *
+     * @param file    log file.
+     * @param options user defined input parameters.
+     * @return regions in the order of file content. Can be empty.
+     */
+    public List<FileRegion> plan(final File file, final ParseOptions options) {
+        FileRegion whole = new FileRegion(file, 0, file.length());
+        List<FileRegion> regions = Collections.singletonList(planTime(whole, options));
+        String username = options.getFilterValue(Filter.USERNAME);
+        if (username != null && !username.isEmpty() && regions.get(0).getLength() > 0) {
+            regions = planUsername(regions.get(0), options.getFilterTerms(Filter.USERNAME));
+        }
+        return regions.size() == 1 && regions.get(0).getLength() == 0 ? Collections.<FileRegion>emptyList() : regions;
+    }
+
+    private FileRegion planTime(final FileRegion whole, final ParseOptions options) {
+        File file = whole.getFile();
+        DateRange range = options.getDateRange();
+        if (range == null) {
+            return whole;
+        }
+        TimeIndex index = loadTimeIndex(file);
+        if (index == null) {
+            return whole;
+        }
+        if (!index.isValidFor(file)) {
+            logger.log(Level.INFO, "Time index is outdated, file is scanned completely: " + file);
+            return whole;
+        }
+        if (!index.isSorted()) {
+            return whole;
+        }
+        FileRegion region = index.getRegion(file, range);
+        logger.log(Level.INFO, String.format("Time index of %s: %d of %d bytes are scanned",
+                file, region.getLength(), whole.getLength()));
+        return region;
+    }
+
+    private List<FileRegion> planUsername(final FileRegion region, final List<String> usernames) {
+        File file = region.getFile();
+        UsernameIndex index = loadUsernameIndex(file);
+        if (index == null) {
+            return Collections.singletonList(region);
+        }
+        if (!index.isValidFor(file)) {
+            logger.log(Level.INFO, "Username index is outdated, file is scanned completely: " + file);
+            return Collections.singletonList(region);
+        }
+        List<FileRegion> regions = index.getRegions(region, usernames);
+        long scanned = 0;
+        for (FileRegion part : regions) {
+            scanned += part.getLength();
+        }
+        long skipped = region.getLength() - scanned;
+        logger.log(Level.INFO, String.format("Username index of %s: %d of %d bytes are skipped (%.1f%%), %d regions of %d blocks are scanned",
+                file, skipped, region.getLength(), 100.0 * skipped / region.getLength(), regions.size(), index.getBlocksCount()));
+        return regions;
+    }
+
+    /**
+     * Load time index of the file.
+     *
+     * @param file log file.
+     * @return index or {@code null} if it doesn't exist or cannot be read.
+     */
+    public TimeIndex loadTimeIndex(final File file) {
+        try (DataInputStream in = open(file, TIME_INDEX_EXTENSION)) {
+            return in != null ? TimeIndex.readFrom(in) : null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Time index cannot be read and will be ignored: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Load username index of the file.
+     *
+     * @param file log file.
+     * @return index or {@code null} if it doesn't exist or cannot be read.
+     */
+    public UsernameIndex loadUsernameIndex(final File file) {
+        try (DataInputStream in = open(file, USERNAME_INDEX_EXTENSION)) {
+            return in != null ? UsernameIndex.readFrom(in) : null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Username index cannot be read and will be ignored: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return stream positioned after the header of the index file or {@code null} if index of the file doesn't exist.
+     */
+    private DataInputStream open(final File file, final String extension) throws IOException {
+        File indexFile = getIndexFile(file, extension);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() == MAGIC && in.readInt() == VERSION && in.readUTF().equals(file.getAbsolutePath())) {
+                return in;
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        in.close();
+        return null;
+    }
+
+    /**
+     * Save index of the file. Previous index is replaced atomically.
+     */
+    private void save(final File file, final String extension, final IndexWriter writer) throws IOException {
+        File indexFile = getIndexFile(file, extension);
+        File temporary = File.createTempFile(indexFile.getName(), ".tmp", m_directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(file.getAbsolutePath());
+                writer.writeTo(out);
+            }
+            Files.move(temporary.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    /**
+     * @return sidecar file named after the log file. Hash of the path distinguishes logs with the same name.
+     */
+    private File getIndexFile(final File file, final String extension) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(file.getName()).append('.');
+            for (int i = 0; i < 4; i++) {
+                name.append(String.format("%02x", digest[i]));
+            }
+            return new File(m_directory, name.append(extension).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writer of index content.
+     */
+    private interface IndexWriter {
+        void writeTo(DataOutput out) throws IOException;
+    }
+}
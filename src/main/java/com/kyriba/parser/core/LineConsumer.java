@@ -0,0 +1,20 @@
+package com.kyriba.parser.core;
+
+import java.io.IOException;
+
+/**
+ * Consumer of lines that are kept as bytes.
+ * <p>
+ * <p>Bytes of a line are valid only during the call, so the consumer must copy them if it keeps the line.</p>
+ *
+ * @author VMyakushin
+ */
+public interface LineConsumer {
+    /**
+     * @param bytes  buffer that contains the line.
+     * @param offset position of the first byte of the line.
+     * @param length number of bytes of the line without terminator.
+     * @throws IOException in case of processing errors.
+     */
+    void accept(byte[] bytes, int offset, int length) throws IOException;
+}
@@ -0,0 +1,271 @@
+package com.kyriba.parser.core;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+
+/**
+ * Extracts values of all {@link Filter fields} from a text line.
+ * <p>
+ * <p>Every field is extracted on the first request and at most once per line,
+ * so filters and grouping conditions share the same regular expression work.
+ * Matchers are created once and reused for all lines.</p>
+ * <p>
+ * <p>Lines read as bytes are matched as {@link ByteLine views} of the buffer if it gives the same characters
+ * as decoding with the {@link Configuration#getInputCharset() input charset}, otherwise they are decoded.
+ * Filters compare fields with {@link #isFieldEqual(Filter, String)} and {@link #fieldContains(Filter, String)},
+ * so a line and its fields become strings only if a value is requested by {@link #getField(Filter)}.
+ * Parsed date of the previous line is reused while lines have the same date.</p>
+ * <p>
+ * <p>If {@link LineLayout layout} of lines is set, fields of the layout are cut out by index scans
+ * and patterns are used only for lines that don't fit the layout.</p>
+ * <p>
+ * <p>Not thread-safe. Every parsing thread must use its own instance.</p>
+ *
+ * @author VMyakushin
+ */
+public class LineExtractor {
+    private static final Filter[] FIELDS = Filter.values();
+    private final Matcher[] m_matchers;
+    private final String[] m_values;
+    private final int[] m_starts;
+    private final int[] m_ends;
+    private final boolean[] m_extracted;
+    private final Charset m_charset;
+    private final boolean m_singleByte;
+    private final boolean m_asciiCompatible;
+    private final ByteLine m_byteLine;
+    private CharSequence m_line;
+    private boolean m_layoutApplied;
+    private String m_lastDate;
+    private DateCache.Entry m_lastDateEntry;
+
+    /**
+     * Constructor. Patterns of all filters must be {@link Filter#compileAll() compiled} before.
+     */
+    public LineExtractor() {
+        m_matchers = new Matcher[FIELDS.length];
+        m_values = new String[FIELDS.length];
+        m_starts = new int[FIELDS.length];
+        m_ends = new int[FIELDS.length];
+        m_extracted = new boolean[FIELDS.length];
+        for (Filter field : FIELDS) {
+            m_matchers[field.ordinal()] = field.getPattern().matcher("");
+        }
+        m_charset = Configuration.INSTANCE.getInputCharset();
+        m_singleByte = StandardCharsets.ISO_8859_1.equals(m_charset);
+        m_asciiCompatible = isAsciiCompatible(m_charset);
+        m_byteLine = new ByteLine();
+    }
+
+    /**
+     * Start processing of the next line. Values of the previous line are discarded.
+     *
+     * @param line text line.
+     */
+    public void extract(final CharSequence line) {
+        m_line = line;
+        m_layoutApplied = false;
+        for (int i = 0; i < m_extracted.length; i++) {
+            m_extracted[i] = false;
+            m_values[i] = null;
+        }
+    }
+
+    /**
+     * Start processing of the next line that is kept as bytes. Values of the previous line are discarded.
+     * Bytes must not be changed while the line is processed.
+     *
+     * @param bytes  buffer that contains the line.
+     * @param offset position of the first byte of the line.
+     * @param length number of bytes of the line without terminator.
+     */
+    public void extract(final byte[] bytes, final int offset, final int length) {
+        if (m_singleByte || m_asciiCompatible && ByteLine.isAscii(bytes, offset, length)) {
+            m_byteLine.set(bytes, offset, length);
+            extract(m_byteLine);
+        } else {
+            extract(new String(bytes, offset, length, m_charset));
+        }
+    }
+
+    /**
+     * Get value of the field from the current line.
+     *
+     * @param field field which pattern is used for extraction.
+     * @return value of the named group of field pattern or {@code null} if the line doesn't match the pattern.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    public String getField(final Filter field) throws IllegalArgumentException {
+        int index = field.ordinal();
+        if (m_values[index] == null && find(field)) {
+            m_values[index] = m_line.subSequence(m_starts[index], m_ends[index]).toString();
+        }
+        return m_values[index];
+    }
+
+    /**
+     * Get identifier of the field value from the current line. The value becomes a string
+     * only if it's new to the dictionary.
+     *
+     * @param field      field which pattern is used for extraction.
+     * @param dictionary dictionary of field values.
+     * @return positive identifier or zero if the line doesn't match the pattern.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    public int getFieldId(final Filter field, final ValueDictionary dictionary) throws IllegalArgumentException {
+        if (!find(field)) {
+            return 0;
+        }
+        int index = field.ordinal();
+        return m_values[index] != null ? dictionary.getId(m_values[index])
+                : dictionary.getId(m_line, m_starts[index], m_ends[index]);
+    }
+
+    /**
+     * Check value of the field from the current line without creation of a string.
+     *
+     * @param field field which pattern is used for extraction.
+     * @param value expected value.
+     * @return {@code true} if the line matches the pattern and the field is equal to the value.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    public boolean isFieldEqual(final Filter field, final String value) throws IllegalArgumentException {
+        if (!find(field)) {
+            return false;
+        }
+        int index = field.ordinal();
+        int start = m_starts[index];
+        return m_ends[index] - start == value.length() && regionMatches(start, value);
+    }
+
+    /**
+     * Search value in the field from the current line without creation of a string.
+     *
+     * @param field field which pattern is used for extraction.
+     * @param value searched value.
+     * @return {@code true} if the line matches the pattern and the field contains the value.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    public boolean fieldContains(final Filter field, final String value) throws IllegalArgumentException {
+        if (!find(field)) {
+            return false;
+        }
+        int index = field.ordinal();
+        int last = m_ends[index] - value.length();
+        for (int start = m_starts[index]; start <= last; start++) {
+            if (regionMatches(start, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find terms matched by the field from the current line without creation of a string.
+     *
+     * @param field   field which pattern is used for extraction.
+     * @param matcher matcher of the field terms.
+     * @param found   receives indexes of matched terms, see {@link TermMatcher#match(CharSequence, int, int, int[], boolean[])}.
+     * @param seen    scratch flags of terms.
+     * @return number of matched terms. Zero if the line doesn't match the pattern.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    public int matchTerms(final Filter field, final TermMatcher matcher, final int[] found, final boolean[] seen)
+            throws IllegalArgumentException {
+        if (!find(field)) {
+            return 0;
+        }
+        int index = field.ordinal();
+        return matcher.match(m_line, m_starts[index], m_ends[index], found, seen);
+    }
+
+    /**
+     * Get parsed {@link Filter#DATE date} of the current line. The date is looked up in {@link DateCache}
+     * only if it differs from the date of the previous line.
+     *
+     * @return cached date or {@code null} if the line doesn't match the pattern.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    public DateCache.Entry getDate() throws IllegalArgumentException {
+        if (!find(Filter.DATE)) {
+            return null;
+        }
+        int index = Filter.DATE.ordinal();
+        if (m_lastDate == null || m_ends[index] - m_starts[index] != m_lastDate.length() || !regionMatches(m_starts[index], m_lastDate)) {
+            m_lastDate = getField(Filter.DATE);
+            m_lastDateEntry = DateCache.INSTANCE.get(m_lastDate);
+        }
+        return m_lastDateEntry;
+    }
+
+    /**
+     * @return current line.
+     */
+    public String getLine() {
+        return m_line.toString();
+    }
+
+    /**
+     * Cut out fields of the layout or run pattern of the field once per line.
+     *
+     * @return {@code true} if the line contains the field.
+     */
+    private boolean find(final Filter field) {
+        int index = field.ordinal();
+        if (!m_extracted[index] && !m_layoutApplied && LineLayout.INSTANCE.contains(field)) {
+            m_layoutApplied = true;
+            if (LineLayout.INSTANCE.extract(m_line, m_starts, m_ends)) {
+                for (Filter layoutField : FIELDS) {
+                    if (LineLayout.INSTANCE.contains(layoutField)) {
+                        m_extracted[layoutField.ordinal()] = true;
+                    }
+                }
+            }
+        }
+        if (!m_extracted[index]) {
+            Matcher matcher = m_matchers[index].reset(m_line);
+            if (!matcher.find()) {
+                m_starts[index] = -1;
+                m_extracted[index] = true;
+                return false;
+            }
+            String name = field.getPatternGroupName();
+            m_starts[index] = matcher.start(name);
+            m_ends[index] = matcher.end(name);
+            m_extracted[index] = true;
+        }
+        return m_starts[index] >= 0;
+    }
+
+    private boolean regionMatches(final int start, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (m_line.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lines are split on line feed and carriage return bytes, so only such charsets can be read.
+     *
+     * @return {@code true} if the charset decodes every ASCII byte to the same character.
+     */
+    static boolean isAsciiCompatible(final Charset charset) {
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        String decoded = new String(ascii, charset);
+        if (decoded.length() != ascii.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length; i++) {
+            if (decoded.charAt(i) != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
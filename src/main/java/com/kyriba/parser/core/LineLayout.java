@@ -0,0 +1,185 @@
+package com.kyriba.parser.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed layout of log lines. Singleton.
+ * <p>
+ * <p>Layout is a template like {@code {date:10} [{username}]: {message}} where fields are named as groups
+ * of {@link Filter} patterns. {@code {field:N}} takes exactly N characters, other fields end at the first occurrence
+ * of the following text or at the end of the line if the field is the last one. Fields are extracted
+ * by plain index scans instead of regular expressions.</p>
+ * <p>
+ * <p>A line fits the layout if all texts between fields are found in their places
+ * and every field except the last one isn't empty. Fields of lines that don't fit the layout
+ * and fields missed in the layout are extracted by patterns. Thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public enum LineLayout {
+    INSTANCE;
+
+    private volatile Segment[] m_segments = new Segment[0];
+
+    /**
+     * Set layout of log lines.
+     *
+     * @param layout template of a line. Empty if fields are extracted by patterns only.
+     * @throws IllegalArgumentException if the template contains unknown fields, the same field twice,
+     *                                  or a field of unknown width followed by another field.
+     */
+    public void setLayout(final String layout) throws IllegalArgumentException {
+        List<Segment> segments = new ArrayList<>();
+        boolean[] used = new boolean[Filter.values().length];
+        int position = 0;
+        while (position < layout.length()) {
+            int open = layout.indexOf('{', position);
+            if (open < 0) {
+                segments.add(new Segment(null, layout.substring(position), 0));
+                break;
+            }
+            if (open > position) {
+                segments.add(new Segment(null, layout.substring(position, open), 0));
+            }
+            int close = layout.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Field isn't closed in layout: " + layout);
+            }
+            Segment field = parseField(layout.substring(open + 1, close), layout);
+            if (used[field.m_field.ordinal()]) {
+                throw new IllegalArgumentException("Field " + field.m_field + " is specified twice in layout: " + layout);
+            }
+            used[field.m_field.ordinal()] = true;
+            Segment previous = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (previous != null && previous.m_field != null && previous.m_width == 0) {
+                throw new IllegalArgumentException("Field " + previous.m_field + " must be followed by text or have width in layout: " + layout);
+            }
+            segments.add(field);
+            position = close + 1;
+        }
+        m_segments = segments.toArray(new Segment[segments.size()]);
+    }
+
+    /**
+     * @return {@code true} if the layout is set.
+     */
+    public boolean isDefined() {
+        return m_segments.length > 0;
+    }
+
+    /**
+     * @param field field of a line.
+     * @return {@code true} if the field is a part of the layout.
+     */
+    public boolean contains(final Filter field) {
+        for (Segment segment : m_segments) {
+            if (segment.m_field == field) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find fields of the line. Bounds of fields are stored by {@link Filter#ordinal() ordinal} of the field.
+     * Bounds of fields that are missed in the layout aren't changed.
+     *
+     * @param line   text line.
+     * @param starts start positions of fields.
+     * @param ends   end positions of fields.
+     * @return {@code true} if the line fits the layout. Bounds are incomplete otherwise.
+     */
+    public boolean extract(final CharSequence line, final int[] starts, final int[] ends) {
+        Segment[] segments = m_segments;
+        int position = 0;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            if (segment.m_field == null) {
+                if (!regionMatches(line, position, segment.m_text)) {
+                    return false;
+                }
+                position += segment.m_text.length();
+                continue;
+            }
+            int end;
+            if (segment.m_width > 0) {
+                end = position + segment.m_width;
+                if (end > line.length()) {
+                    return false;
+                }
+            } else if (i + 1 < segments.length) {
+                end = indexOf(line, segments[i + 1].m_text, position + 1);
+                if (end < 0) {
+                    return false;
+                }
+            } else {
+                end = line.length();
+            }
+            starts[segment.m_field.ordinal()] = position;
+            ends[segment.m_field.ordinal()] = end;
+            position = end;
+        }
+        return true;
+    }
+
+    private static Segment parseField(final String field, final String layout) {
+        int colon = field.indexOf(':');
+        String name = colon < 0 ? field : field.substring(0, colon);
+        int width = 0;
+        if (colon >= 0) {
+            try {
+                width = Integer.parseInt(field.substring(colon + 1).trim());
+            } catch (NumberFormatException e) {
+                width = 0;
+            }
+            if (width < 1) {
+                throw new IllegalArgumentException("Width of field " + name + " must be positive in layout: " + layout);
+            }
+        }
+        for (Filter filter : Filter.values()) {
+            if (filter.toString().equalsIgnoreCase(name.trim())) {
+                return new Segment(filter, null, width);
+            }
+        }
+        throw new IllegalArgumentException("Unknown field " + name + " in layout: " + layout);
+    }
+
+    private static boolean regionMatches(final CharSequence line, final int start, final String text) {
+        if (start + text.length() > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(final CharSequence line, final String text, final int from) {
+        int last = line.length() - text.length();
+        char first = text.charAt(0);
+        for (int i = from; i <= last; i++) {
+            if (line.charAt(i) == first && regionMatches(line, i, text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Field or text between fields.
+     */
+    private static final class Segment {
+        private final Filter m_field;
+        private final String m_text;
+        private final int m_width;
+
+        private Segment(final Filter field, final String text, final int width) {
+            m_field = field;
+            m_text = text;
+            m_width = width;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.kyriba.parser.core;
+
+/**
+ * Applies user defined filters and grouping conditions to text lines.
+ * <p>
+ * <p>Lines are counted by {@link ParserMetrics} if metrics are enabled.</p>
+ * <p>
+ * <p>Filters with several terms are matched by their {@link TermMatcher}, matched terms of every matched line
+ * are counted by {@link ParsingResults#addTermHits(Filter, int[], int)}.</p>
+ * <p>
+ * <p>Not thread-safe. Every parsing thread must use its own instance.</p>
+ *
+ * @author VMyakushin
+ */
+public class LineProcessor {
+    private static final Filter[] FILTERS = Filter.values();
+    private final ParseOptions m_options;
+    private final ParsingResults m_results;
+    private final LineExtractor m_extractor;
+    private final ParserMetrics.Recorder m_recorder;
+    private final int[][] m_foundTerms;
+    private final int[] m_foundCounts;
+    private final boolean[][] m_seenTerms;
+
+    /**
+     * Constructor.
+     *
+     * @param options user defined input parameters.
+     * @param results results that collect statistic for matched lines.
+     */
+    public LineProcessor(final ParseOptions options, final ParsingResults results) {
+        this(options, results, new LineExtractor(), ParserMetrics.INSTANCE.createRecorder());
+    }
+
+    /**
+     * Constructor of a processor that shares lines with another processor. Lines aren't counted by metrics.
+     *
+     * @param options   user defined input parameters.
+     * @param results   results that collect statistic for matched lines.
+     * @param extractor extractor of the processor that reads lines.
+     */
+    LineProcessor(final ParseOptions options, final ParsingResults results, final LineExtractor extractor) {
+        this(options, results, extractor, null);
+    }
+
+    private LineProcessor(final ParseOptions options, final ParsingResults results, final LineExtractor extractor,
+                          final ParserMetrics.Recorder recorder) {
+        m_options = options;
+        m_results = results;
+        m_extractor = extractor;
+        m_recorder = recorder;
+        m_foundTerms = new int[FILTERS.length][];
+        m_foundCounts = new int[FILTERS.length];
+        m_seenTerms = new boolean[FILTERS.length][];
+        for (Filter filter : FILTERS) {
+            TermMatcher matcher = options.getTermMatcher(filter);
+            if (matcher != null) {
+                m_foundTerms[filter.ordinal()] = new int[matcher.getTerms().size()];
+                m_seenTerms[filter.ordinal()] = new boolean[matcher.getTerms().size()];
+            }
+        }
+    }
+
+    /**
+     * Check the line against all filters and add it to statistic if it matches.
+     * The line isn't decoded to a string unless it's required by its charset.
+     *
+     * @param bytes  buffer that contains the line.
+     * @param offset position of the first byte of the line.
+     * @param length number of bytes of the line without terminator.
+     * @return {@code true} if the line matches all filters and must be written to output.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    public boolean process(final byte[] bytes, final int offset, final int length) throws IllegalArgumentException {
+        m_extractor.extract(bytes, offset, length);
+        if (m_recorder == null || !m_recorder.lineRead(length)) {
+            return filter() && group();
+        }
+        long start = System.nanoTime();
+        boolean matched = filter();
+        long filtered = System.nanoTime();
+        matched = matched && group();
+        m_recorder.addTimes(filtered - start, matched ? System.nanoTime() - filtered : 0);
+        return matched;
+    }
+
+    /**
+     * Add lines counted since the last flush to {@link ParserMetrics}. Must be called when a region is parsed.
+     */
+    public void flushMetrics() {
+        if (m_recorder != null) {
+            m_recorder.flush();
+        }
+    }
+
+    /**
+     * Check the current line of the shared extractor against all filters and add it to statistic if it matches.
+     *
+     * @return {@code true} if the line matches all filters and must be written to output.
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    boolean processExtracted() throws IllegalArgumentException {
+        return filter() && group();
+    }
+
+    private boolean filter() {
+        for (Filter filter : m_options.getFilters()) {
+            TermMatcher matcher = m_options.getTermMatcher(filter);
+            if (matcher != null) {
+                int index = filter.ordinal();
+                m_foundCounts[index] = m_extractor.matchTerms(filter, matcher, m_foundTerms[index], m_seenTerms[index]);
+                if (m_foundCounts[index] == 0) {
+                    return false;
+                }
+                if (m_recorder != null) {
+                    m_recorder.filterMatched(filter);
+                }
+            } else if (!m_options.getFilterValue(filter).isEmpty()) {
+                if (!filter.match(m_extractor, m_options)) {
+                    return false;
+                }
+                if (m_recorder != null) {
+                    m_recorder.filterMatched(filter);
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean group() {
+        for (int i = 0; i < m_foundTerms.length; i++) {
+            if (m_foundTerms[i] != null) {
+                m_results.addTermHits(FILTERS[i], m_foundTerms[i], m_foundCounts[i]);
+            }
+        }
+        GroupingKeyEncoder encoder = m_results.getEncoder();
+        boolean exact = m_results.getAggregation() == Aggregation.EXACT;
+        long key = 0;
+        for (GroupBy condition : m_options.getGroupingConditions()) {
+            if (!exact && condition == GroupBy.USERNAME) {
+                continue; //counted by summary of the time group
+            }
+            key = encoder.encode(key, condition, m_extractor);
+        }
+        if (exact) {
+            if (key != 0) {
+                m_results.add(key);
+            }
+        } else {
+            String username = GroupBy.USERNAME.getValue(m_extractor);
+            if (username != null) {
+                m_results.add(key, username);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return user defined input parameters.
+     */
+    public ParseOptions getOptions() {
+        return m_options;
+    }
+
+    /**
+     * @return extractor of line fields shared by filters and grouping conditions.
+     */
+    public LineExtractor getExtractor() {
+        return m_extractor;
+    }
+
+    /**
+     * @return results that collect statistic for matched lines.
+     */
+    public ParsingResults getResults() {
+        return m_results;
+    }
+}
@@ -0,0 +1,107 @@
+package com.kyriba.parser.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits bytes to lines the same way as {@link BufferedReader#readLine()} does.
+ * <p>
+ * <p>A line is terminated by line feed, carriage return or carriage return followed by line feed.
+ * Bytes are read to a large buffer in bulk and lines are passed to {@link LineConsumer consumer} as ranges of the buffer,
+ * so lines are neither copied one by one nor decoded. Only the last incomplete line of the buffer is moved
+ * to the buffer start before the next read. The buffer grows if a single line doesn't fit it.
+ * The charset of the content must encode line feed and carriage return as single bytes (e.g. UTF-8).</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+class LineSplitter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private byte[] m_buffer;
+
+    LineSplitter() {
+        m_buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Split the whole stream to lines.
+     *
+     * @param in       stream. It isn't closed.
+     * @param consumer consumer of the lines.
+     * @throws IOException in case of reading errors or errors of the consumer.
+     */
+    void split(final InputStream in, final LineConsumer consumer) throws IOException {
+        split(in::read, consumer);
+    }
+
+    /**
+     * Split remaining bytes of the buffer to lines.
+     *
+     * @param buffer   buffer, e.g. memory-mapped region of a file. Its position is moved to its limit.
+     * @param consumer consumer of the lines.
+     * @throws IOException in case of errors of the consumer.
+     */
+    void split(final ByteBuffer buffer, final LineConsumer consumer) throws IOException {
+        split((bytes, offset, length) -> {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }, consumer);
+    }
+
+    private void split(final Source source, final LineConsumer consumer) throws IOException {
+        int lineStart = 0;
+        int limit = 0;
+        boolean skipLineFeed = false;
+
+        while (true) {
+            if (limit == m_buffer.length) {
+                if (lineStart > 0) {
+                    System.arraycopy(m_buffer, lineStart, m_buffer, 0, limit - lineStart);
+                    limit -= lineStart;
+                    lineStart = 0;
+                } else {
+                    m_buffer = Arrays.copyOf(m_buffer, m_buffer.length * 2);
+                }
+            }
+            int position = limit;
+            int read = source.read(m_buffer, limit, m_buffer.length - limit);
+            if (read < 0) {
+                break;
+            }
+            limit += read;
+            for (; position < limit; position++) {
+                byte current = m_buffer[position];
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (current == '\n') {
+                        lineStart = position + 1;
+                        continue;
+                    }
+                }
+                if (current == '\n' || current == '\r') {
+                    consumer.accept(m_buffer, lineStart, position - lineStart);
+                    lineStart = position + 1;
+                    skipLineFeed = current == '\r';
+                }
+            }
+        }
+        if (limit > lineStart) {
+            consumer.accept(m_buffer, lineStart, limit - lineStart);
+        }
+    }
+
+    /**
+     * Source of bytes with contract of {@link InputStream#read(byte[], int, int)}.
+     */
+    private interface Source {
+        int read(byte[] bytes, int offset, int length) throws IOException;
+    }
+}
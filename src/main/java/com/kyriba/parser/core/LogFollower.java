@@ -0,0 +1,303 @@
+package com.kyriba.parser.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follow mode: tails growing log files and keeps statistic up to date.
+ * <p>
+ * <p>Watches directory tree of {@link ParseOptions#getInputFile() input path} with {@link WatchService}
+ * and remembers offset of every file, so only appended bytes are parsed. Files are parsed when the watch service
+ * reports them as created or modified. Deleted files and lost events cause a scan of all files.</p>
+ * <p>
+ * <p>Files are identified by {@link BasicFileAttributes#fileKey() file key} when the file system provides it,
+ * otherwise by checksum of leading bytes, as {@link Checkpoint} does: a renamed file keeps its offset,
+ * a new file under old name and a truncated file are parsed from the start.</p>
+ * <p>
+ * <p>{@link #addRollingWindow(RollingWindowCounter) Rolling windows} count lines by their dates
+ * if the {@link DateCache#isDayGranularity() date format} has time of day, and by the time they were read otherwise.</p>
+ * <p>
+ * <p>{@link #run()} blocks until the follower is {@link #close() closed}.
+ * Results can be read from other threads at any time.</p>
+ *
+ * @author VMyakushin
+ */
+public class LogFollower implements Runnable, Closeable {
+    private static final Logger logger = Logger.getLogger(LogFollower.class.getName());
+    private final ParseOptions m_options;
+    private final File m_input;
+    private final LineProcessor m_processor;
+    private final TailReader m_reader;
+    private final OutputSink m_output;
+    private final WatchService m_watchService;
+    private final Map<WatchKey, Path> m_directories;
+    private final FileWalker m_walker;
+    private final List<RollingWindowCounter> m_windows;
+    private final Map<Object, FileState> m_files;
+    private final boolean m_fromBeginning;
+    private volatile boolean m_closed;
+
+    /**
+     * Constructor.
+     *
+     * @param options       user defined input parameters.
+     * @param fromBeginning {@code true} to parse existing content of files first,
+     *                      {@code false} to parse only lines appended after start.
+     * @throws IOException if output file cannot be opened or input directory cannot be watched.
+     */
+    public LogFollower(final ParseOptions options, final boolean fromBeginning) throws IOException {
+        m_options = options;
+        m_input = options.getInputFile().getAbsoluteFile();
+        m_fromBeginning = fromBeginning;
+        m_processor = new LineProcessor(options, new ParsingResults(options));
+        m_reader = new TailReader();
+        m_windows = new CopyOnWriteArrayList<>();
+        m_files = new HashMap<>();
+        m_directories = new HashMap<>();
+        m_output = new OutputSink(options.getOutputFile());
+        m_walker = new FileWalker(Configuration.INSTANCE.getIncludePatterns(), Configuration.INSTANCE.getExcludePatterns());
+        m_watchService = m_input.toPath().getFileSystem().newWatchService();
+        register(m_input.isDirectory() ? m_input.toPath() : m_input.getParentFile().toPath());
+    }
+
+    /**
+     * Keep counts of matched lines over a rolling window. Counters can be added at any time.
+     *
+     * @param counter rolling window counter.
+     */
+    public void addRollingWindow(final RollingWindowCounter counter) {
+        m_windows.add(counter);
+    }
+
+    /**
+     * Parse existing files and wait for changes until the follower is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            scan(m_fromBeginning);
+            while (!m_closed) {
+                WatchKey key = m_watchService.take();
+                Path directory = m_directories.get(key);
+                boolean rescan = directory == null;
+                Set<Path> changed = new LinkedHashSet<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        rescan = true;
+                    } else if (directory != null) {
+                        changed.add(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    m_directories.remove(key);
+                }
+                if (rescan) {
+                    scan(true);
+                } else {
+                    for (Path path : changed) {
+                        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                            scan(true);
+                            break;
+                        }
+                        if (m_walker.accepts(m_input, path.toFile())) {
+                            follow(path.toFile(), m_files, true);
+                        }
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            //nothing. follower was closed.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Follow mode was stopped", e);
+        }
+    }
+
+    /**
+     * Get copy of current statistic.
+     *
+     * @return statistic of all lines parsed so far.
+     */
+    public synchronized ParsingResults getResults() {
+        ParsingResults results = new ParsingResults(m_options);
+        results.merge(m_processor.getResults());
+        return results;
+    }
+
+    /**
+     * Stop following and close output file.
+     *
+     * @throws IOException in case of writing errors.
+     */
+    @Override
+    public void close() throws IOException {
+        m_closed = true;
+        m_watchService.close();
+        synchronized (this) {
+            m_output.close();
+        }
+    }
+
+    /**
+     * Parse appended content of all files and watch all directories of the input.
+     *
+     * @param newFilesFromStart {@code true} to parse files that weren't seen before from the start.
+     */
+    private void scan(final boolean newFilesFromStart) throws IOException {
+        if (m_input.isDirectory()) {
+            Files.walkFileTree(m_input.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        Map<Object, FileState> known = new HashMap<>(m_files);
+        m_files.clear();
+        for (File file : m_walker.walk(m_input)) {
+            follow(file, known, newFilesFromStart);
+        }
+    }
+
+    /**
+     * Parse appended content of the file.
+     *
+     * @param file             followed file.
+     * @param known            states of files that can be the file. The state of the file is moved to followed files.
+     * @param newFileFromStart {@code true} to parse the file from the start if it wasn't seen before.
+     */
+    private void follow(final File file, final Map<Object, FileState> known, final boolean newFileFromStart) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            if (!attributes.isRegularFile() || file.getAbsoluteFile().equals(m_options.getOutputFile().getAbsoluteFile())) {
+                return; //output file can be in the followed directory.
+            }
+            Object fileKey = attributes.fileKey();
+            Object id = fileKey != null ? fileKey : file.getAbsolutePath();
+            FileState state = fileKey != null ? known.remove(id) : findByFingerprint(file, known);
+            if (state == null) {
+                if (ParallelGzipInputStream.isCompressed(file)) {
+                    return; //rotated archive is never appended.
+                }
+                state = new FileState();
+                state.m_offset = newFileFromStart ? 0 : attributes.size();
+            } else if (attributes.size() < state.m_offset) {
+                logger.log(Level.INFO, "File was truncated and will be parsed from the start: " + file);
+                state.m_offset = 0;
+            }
+            m_files.put(id, state);
+            if (attributes.size() > state.m_offset) {
+                state.m_offset = parseTail(file, state.m_offset);
+            }
+            if (fileKey == null && state.m_fingerprintLength < Checkpoint.FINGERPRINT_SIZE) {
+                state.m_fingerprintLength = (int) Math.min(Checkpoint.FINGERPRINT_SIZE, attributes.size());
+                state.m_fingerprint = Checkpoint.fingerprint(file, state.m_fingerprintLength);
+            }
+        } catch (NoSuchFileException e) {
+            //nothing. file was removed, state is dropped by the next scan.
+        }
+    }
+
+    /**
+     * Find state of a file on a file system without file keys. The state of the same path is taken if leading bytes
+     * are unchanged, otherwise the state of another path whose file was replaced, i.e. the file was renamed.
+     *
+     * @param file  followed file.
+     * @param known states of files by paths. The found state is removed.
+     * @return state or {@code null} if the file wasn't seen before.
+     */
+    private static FileState findByFingerprint(final File file, final Map<Object, FileState> known) throws IOException {
+        String path = file.getAbsolutePath();
+        FileState state = known.get(path);
+        if (state != null && state.matches(file)) {
+            return known.remove(path);
+        }
+        for (Iterator<Map.Entry<Object, FileState>> entries = known.entrySet().iterator(); entries.hasNext(); ) {
+            Map.Entry<Object, FileState> entry = entries.next();
+            FileState candidate = entry.getValue();
+            if (entry.getKey() instanceof String && candidate.m_fingerprintLength > 0 && candidate.matches(file)
+                    && !candidate.matches(new File((String) entry.getKey()))) {
+                entries.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void register(final Path directory) throws IOException {
+        WatchKey key = directory.register(m_watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        m_directories.put(key, directory);
+    }
+
+    private synchronized long parseTail(final File file, final long offset) throws IOException {
+        if (m_closed) {
+            return offset;
+        }
+        long offsetAfter;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            offsetAfter = m_reader.read(channel, offset, (bytes, lineOffset, length) -> {
+                if (m_processor.process(bytes, lineOffset, length)) {
+                    m_output.writeLine(bytes, lineOffset, length);
+                    countInWindows();
+                }
+            });
+        } catch (NoSuchFileException e) {
+            return offset;
+        }
+        m_output.flush();
+        return offsetAfter;
+    }
+
+    private void countInWindows() {
+        if (m_windows.isEmpty()) {
+            return;
+        }
+        long time = getLineTime();
+        for (RollingWindowCounter window : m_windows) {
+            String value = window.getCondition().getValue(m_processor.getExtractor());
+            if (value != null) {
+                window.add(value, time);
+            }
+        }
+    }
+
+    private long getLineTime() {
+        if (!DateCache.INSTANCE.isDayGranularity()) {
+            DateCache.Entry date = m_processor.getExtractor().getDate();
+            if (date != null && date.isValid()) {
+                return date.getTime();
+            }
+        }
+        return System.currentTimeMillis();
+    }
+
+    private static final class FileState {
+        private long m_offset;
+        private int m_fingerprintLength;
+        private long m_fingerprint;
+
+        private boolean matches(final File file) throws IOException {
+            try {
+                return Checkpoint.fingerprint(file, m_fingerprintLength) == m_fingerprint;
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.kyriba.parser.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generator of synthetic log files for load testing.
+ * <p>
+ * <p>Lines follow the default format of the tool: {@code <date> [<username>]: <message>},
+ * where date is written with the configured date format. Some lines are stack trace lines without date and username.
+ * Usernames and words of messages are chosen with Zipf distribution, so a few users and words are much more frequent
+ * than the others. Skew 0 means uniform distribution.</p>
+ * <p>
+ * <p>Every file covers its own part of the date range and is written chronologically.
+ * Files are written in parallel. Every file has its own random generator derived from the seed,
+ * so the same settings and seed produce the same files regardless of the number of threads.</p>
+ *
+ * @author VMyakushin
+ */
+public class LogGenerator {
+    private static final Logger logger = Logger.getLogger(LogGenerator.class.getName());
+    private static final String[] COMMON_WORDS = {"Error", "Warning", "login", "logout", "payment", "request",
+            "response", "timeout", "session", "user", "account", "report", "accepted", "rejected", "failed", "completed"};
+    private static final String[] SYLLABLES = {"ka", "ri", "ba", "lo", "me", "tu", "sa", "ne", "po", "di", "gra", "fi",
+            "ven", "tor", "mul", "sec", "pra", "zo", "lin", "cas"};
+    private static final int MIN_WORDS = 3;
+    private static final int MAX_WORDS = 9;
+    private static final long FILE_SEED_STEP = 0x9E3779B97F4A7C15L;
+    private final long m_seed;
+    private int m_usersCount = 1000;
+    private double m_skew = 1.0;
+    private int m_vocabularySize = 500;
+    private Date m_startDate = new GregorianCalendar(2015, Calendar.JANUARY, 1).getTime();
+    private int m_daysCount = 365;
+    private double m_stackTraceRate = 0.05;
+    private String m_dateFormat = "dd/MM/yyyy";
+
+    /**
+     * Constructor.
+     *
+     * @param seed seed of random generators.
+     */
+    public LogGenerator(final long seed) {
+        m_seed = seed;
+    }
+
+    /**
+     * @param usersCount number of different usernames.
+     */
+    public void setUsersCount(final int usersCount) {
+        m_usersCount = requirePositive(usersCount, "Users count");
+    }
+
+    /**
+     * @param skew exponent of Zipf distribution of usernames and words. Zero for uniform distribution.
+     */
+    public void setSkew(final double skew) {
+        if (skew < 0) {
+            throw new IllegalArgumentException("Skew must not be negative: " + skew);
+        }
+        m_skew = skew;
+    }
+
+    /**
+     * @param vocabularySize number of different words in messages.
+     */
+    public void setVocabularySize(final int vocabularySize) {
+        m_vocabularySize = requirePositive(vocabularySize, "Vocabulary size");
+    }
+
+    /**
+     * @param startDate date of the first line.
+     */
+    public void setStartDate(final Date startDate) {
+        m_startDate = new Date(startDate.getTime());
+    }
+
+    /**
+     * @param daysCount number of days covered by all files.
+     */
+    public void setDaysCount(final int daysCount) {
+        m_daysCount = requirePositive(daysCount, "Days count");
+    }
+
+    /**
+     * @param stackTraceRate share of stack trace lines, from 0 to 1.
+     */
+    public void setStackTraceRate(final double stackTraceRate) {
+        if (stackTraceRate < 0 || stackTraceRate >= 1) {
+            throw new IllegalArgumentException("Stack trace rate must be in range [0, 1): " + stackTraceRate);
+        }
+        m_stackTraceRate = stackTraceRate;
+    }
+
+    /**
+     * @param dateFormat pattern for {@link SimpleDateFormat} of dates in lines.
+     */
+    public void setDateFormat(final String dateFormat) {
+        new SimpleDateFormat(dateFormat); //validate pattern
+        m_dateFormat = dateFormat;
+    }
+
+    /**
+     * Generate files {@code app<N>.log} in the directory. Existing files are overwritten.
+     *
+     * @param directory    output directory. Created if it doesn't exist.
+     * @param filesCount   number of files.
+     * @param totalSize    approximate total size of files in bytes.
+     * @param threadsCount number of threads that write files.
+     * @return generated files.
+     * @throws IOException in case of writing errors.
+     */
+    public List<File> generate(final File directory, final int filesCount, final long totalSize, final int threadsCount)
+            throws IOException {
+        requirePositive(filesCount, "Files count");
+        requirePositive(threadsCount, "Threads count");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Directory cannot be created: " + directory);
+        }
+        final double[] users = cumulativeZipf(m_usersCount);
+        final String[] vocabulary = createVocabulary(new Random(m_seed));
+        final double[] words = cumulativeZipf(vocabulary.length);
+        long fileSize = Math.max(1, totalSize / filesCount);
+        long start = System.nanoTime();
+
+        List<File> files = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadsCount, filesCount));
+        try {
+            List<Future<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < filesCount; i++) {
+                final int index = i;
+                final File file = new File(directory, "app" + i + ".log");
+                files.add(file);
+                tasks.add(executor.submit(() -> {
+                    writeFile(file, index, filesCount, fileSize, users, vocabulary, words);
+                    return null;
+                }));
+            }
+            for (Future<Void> task : tasks) {
+                ParserParallelImpl.await(task);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.log(Level.INFO, String.format("%d files (%d MB) were generated in %s in %d ms", filesCount,
+                fileSize * filesCount / (1024 * 1024), directory, (System.nanoTime() - start) / 1000000));
+        return files;
+    }
+
+    private void writeFile(final File file, final int index, final int filesCount, final long size,
+                           final double[] users, final String[] vocabulary, final double[] words) throws IOException {
+        Random random = new Random(m_seed + (index + 1) * FILE_SEED_STEP);
+        SimpleDateFormat format = new SimpleDateFormat(m_dateFormat);
+        Calendar calendar = Calendar.getInstance();
+        long firstDay = (long) index * m_daysCount / filesCount;
+        long daysCount = Math.max(1, (long) (index + 1) * m_daysCount / filesCount - firstDay);
+        long currentDay = -1;
+        String date = null;
+        StringBuilder line = new StringBuilder();
+        long written = 0;
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            while (written < size) {
+                line.setLength(0);
+                if (random.nextDouble() < m_stackTraceRate) {
+                    int type = random.nextInt(vocabulary.length);
+                    line.append("    at com.example.").append(capitalize(vocabulary[type])).append("Service.")
+                            .append(vocabulary[random.nextInt(vocabulary.length)]).append("(")
+                            .append(capitalize(vocabulary[type])).append("Service.java:").append(1 + random.nextInt(999)).append(')');
+                } else {
+                    long day = firstDay + written * daysCount / size;
+                    if (day != currentDay) {
+                        calendar.setTime(m_startDate);
+                        calendar.add(Calendar.DAY_OF_MONTH, (int) day);
+                        date = format.format(calendar.getTime());
+                        currentDay = day;
+                    }
+                    line.append(date).append(" [user").append(sample(users, random)).append("]: ");
+                    int wordsCount = MIN_WORDS + random.nextInt(MAX_WORDS - MIN_WORDS + 1);
+                    for (int i = 0; i < wordsCount; i++) {
+                        if (i > 0) {
+                            line.append(' ');
+                        }
+                        line.append(vocabulary[sample(words, random)]);
+                    }
+                }
+                line.append('\n');
+                writer.append(line);
+                written += line.length();
+            }
+        }
+    }
+
+    /**
+     * @return cumulative probabilities of ranks from 0 to {@code count - 1}.
+     */
+    private double[] cumulativeZipf(final int count) {
+        double[] cumulative = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += 1 / Math.pow(i + 1, m_skew);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < count; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(final double[] cumulative, final Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    private String[] createVocabulary(final Random random) {
+        Set<String> vocabulary = new LinkedHashSet<>();
+        for (int i = 0; i < COMMON_WORDS.length && vocabulary.size() < m_vocabularySize; i++) {
+            vocabulary.add(COMMON_WORDS[i]);
+        }
+        StringBuilder word = new StringBuilder();
+        while (vocabulary.size() < m_vocabularySize) {
+            word.setLength(0);
+            int syllables = 1 + random.nextInt(4);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary.add(word.toString() + (vocabulary.size() >= SYLLABLES.length * SYLLABLES.length ? vocabulary.size() : ""));
+        }
+        return vocabulary.toArray(new String[0]);
+    }
+
+    private static String capitalize(final String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static int requirePositive(final int value, final String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,125 @@
+package com.kyriba.parser.core;
+
+import java.util.Arrays;
+
+/**
+ * Heap {@link CounterTable}.
+ * <p>
+ * <p>Uses open addressing with linear probing over primitive arrays, so updates of existing keys allocate nothing.
+ * Zero key is reserved for empty slots.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class LongCounterTable implements CounterTable {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private long[] m_keys;
+    private long[] m_counts;
+    private int m_mask;
+    private int m_size;
+
+    public LongCounterTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity initial number of slots. Rounded up to power of two.
+     */
+    public LongCounterTable(final int capacity) {
+        int slots = Integer.highestOneBit(Math.max(2, Math.min(capacity, MAX_CAPACITY)) * 2 - 1);
+        m_keys = new long[slots];
+        m_counts = new long[slots];
+        m_mask = slots - 1;
+    }
+
+    @Override
+    public void increment(final long key, final long delta) throws IllegalArgumentException {
+        if (key == 0) {
+            throw new IllegalArgumentException("Zero key is reserved");
+        }
+        int index = slot(key);
+        while (true) {
+            long current = m_keys[index];
+            if (current == key) {
+                m_counts[index] += delta;
+                return;
+            }
+            if (current == 0) {
+                m_keys[index] = key;
+                m_counts[index] = delta;
+                if (++m_size > (m_mask >> 1)) {
+                    resize();
+                }
+                return;
+            }
+            index = (index + 1) & m_mask;
+        }
+    }
+
+    @Override
+    public long get(final long key) {
+        if (key == 0) {
+            return 0;
+        }
+        int index = slot(key);
+        long current;
+        while ((current = m_keys[index]) != 0) {
+            if (current == key) {
+                return m_counts[index];
+            }
+            index = (index + 1) & m_mask;
+        }
+        return 0;
+    }
+
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    @Override
+    public void forEach(final Visitor visitor) {
+        for (int i = 0; i < m_keys.length; i++) {
+            if (m_keys[i] != 0) {
+                visitor.visit(m_keys[i], m_counts[i]);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(m_keys, 0);
+        Arrays.fill(m_counts, 0);
+        m_size = 0;
+    }
+
+    private int slot(final long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & m_mask;
+    }
+
+    private void resize() {
+        if (m_keys.length >= MAX_CAPACITY) {
+            throw new IllegalStateException("Counter table is full: " + m_size + " keys");
+        }
+        long[] keys = m_keys;
+        long[] counts = m_counts;
+        m_keys = new long[keys.length * 2];
+        m_counts = new long[counts.length * 2];
+        m_mask = m_keys.length - 1;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                int index = slot(keys[i]);
+                while (m_keys[index] != 0) {
+                    index = (index + 1) & m_mask;
+                }
+                m_keys[index] = keys[i];
+                m_counts[index] = counts[i];
+            }
+        }
+    }
+}
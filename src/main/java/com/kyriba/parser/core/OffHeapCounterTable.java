@@ -0,0 +1,223 @@
+package com.kyriba.parser.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Off-heap {@link CounterTable}.
+ * <p>
+ * <p>Uses the same open addressing with linear probing as {@link LongCounterTable}, but keys and counters
+ * are kept in direct buffers. Heap holds only a few buffer objects regardless of number of keys,
+ * so garbage collector neither copies nor scans counters and pause times don't grow with number of groups.
+ * Slots are split to segments of {@value #SEGMENT_SLOTS} slots, because a single buffer cannot exceed 2 GB.</p>
+ * <p>
+ * <p>Direct memory is allocated by {@link ByteBuffer#allocateDirect(int)}, so it must fit into {@code -XX:MaxDirectMemorySize}.
+ * It's freed explicitly after resize and by {@link #release()}, because direct buffers are small heap objects
+ * and garbage collector may keep them for a long time. If the JVM doesn't allow to free buffers,
+ * memory is returned when the buffers are collected.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class OffHeapCounterTable implements CounterTable {
+    private static final Logger logger = Logger.getLogger(OffHeapCounterTable.class.getName());
+    private static final BufferFreer FREER = createFreer();
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int SEGMENT_BITS = 22;
+    private static final int SEGMENT_SLOTS = 1 << SEGMENT_BITS;
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+    private ByteBuffer[] m_segments;
+    private int m_capacity;
+    private int m_mask;
+    private int m_size;
+
+    public OffHeapCounterTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity initial number of slots. Rounded up to power of two.
+     */
+    public OffHeapCounterTable(final int capacity) {
+        allocate(Integer.highestOneBit(Math.max(2, Math.min(capacity, MAX_CAPACITY)) * 2 - 1));
+    }
+
+    @Override
+    public void increment(final long key, final long delta) throws IllegalArgumentException {
+        if (key == 0) {
+            throw new IllegalArgumentException("Zero key is reserved");
+        }
+        int index = slot(key);
+        while (true) {
+            ByteBuffer segment = m_segments[index >>> SEGMENT_BITS];
+            int offset = (index & (SEGMENT_SLOTS - 1)) * SLOT_BYTES;
+            long current = segment.getLong(offset);
+            if (current == key) {
+                segment.putLong(offset + Long.BYTES, segment.getLong(offset + Long.BYTES) + delta);
+                return;
+            }
+            if (current == 0) {
+                segment.putLong(offset, key);
+                segment.putLong(offset + Long.BYTES, delta);
+                if (++m_size > (m_mask >> 1)) {
+                    resize();
+                }
+                return;
+            }
+            index = (index + 1) & m_mask;
+        }
+    }
+
+    @Override
+    public long get(final long key) {
+        if (key == 0) {
+            return 0;
+        }
+        int index = slot(key);
+        while (true) {
+            ByteBuffer segment = m_segments[index >>> SEGMENT_BITS];
+            int offset = (index & (SEGMENT_SLOTS - 1)) * SLOT_BYTES;
+            long current = segment.getLong(offset);
+            if (current == key) {
+                return segment.getLong(offset + Long.BYTES);
+            }
+            if (current == 0) {
+                return 0;
+            }
+            index = (index + 1) & m_mask;
+        }
+    }
+
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    @Override
+    public void forEach(final Visitor visitor) {
+        for (ByteBuffer segment : m_segments) {
+            for (int offset = 0; offset < segment.capacity(); offset += SLOT_BYTES) {
+                long key = segment.getLong(offset);
+                if (key != 0) {
+                    visitor.visit(key, segment.getLong(offset + Long.BYTES));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (ByteBuffer segment : m_segments) {
+            for (int offset = 0; offset < segment.capacity(); offset += Long.BYTES) {
+                segment.putLong(offset, 0);
+            }
+        }
+        m_size = 0;
+    }
+
+    /**
+     * Free direct memory of buffers. The table must not be used after that.
+     */
+    @Override
+    public void release() {
+        free(m_segments);
+        m_segments = new ByteBuffer[0];
+        m_size = 0;
+    }
+
+    private void allocate(final int slots) {
+        int segmentSlots = Math.min(slots, SEGMENT_SLOTS);
+        m_segments = new ByteBuffer[slots / segmentSlots];
+        for (int i = 0; i < m_segments.length; i++) {
+            m_segments[i] = ByteBuffer.allocateDirect(segmentSlots * SLOT_BYTES).order(ByteOrder.nativeOrder());
+        }
+        m_capacity = slots;
+        m_mask = slots - 1;
+    }
+
+    private int slot(final long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & m_mask;
+    }
+
+    private void resize() {
+        if (m_capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Counter table is full: " + m_size + " keys");
+        }
+        ByteBuffer[] segments = m_segments;
+        allocate(m_capacity * 2);
+        for (ByteBuffer segment : segments) {
+            for (int offset = 0; offset < segment.capacity(); offset += SLOT_BYTES) {
+                long key = segment.getLong(offset);
+                if (key != 0) {
+                    int index = slot(key);
+                    while (true) {
+                        ByteBuffer target = m_segments[index >>> SEGMENT_BITS];
+                        int targetOffset = (index & (SEGMENT_SLOTS - 1)) * SLOT_BYTES;
+                        if (target.getLong(targetOffset) == 0) {
+                            target.putLong(targetOffset, key);
+                            target.putLong(targetOffset + Long.BYTES, segment.getLong(offset + Long.BYTES));
+                            break;
+                        }
+                        index = (index + 1) & m_mask;
+                    }
+                }
+            }
+        }
+        free(segments);
+    }
+
+    private static void free(final ByteBuffer[] segments) {
+        if (FREER == null) {
+            return;
+        }
+        for (ByteBuffer segment : segments) {
+            try {
+                FREER.free(segment);
+            } catch (ReflectiveOperationException e) {
+                logger.log(Level.FINE, "Direct buffer cannot be freed", e);
+            }
+        }
+    }
+
+    /**
+     * Cleaner of direct buffers is internal API: {@code Unsafe.invokeCleaner} since Java 9
+     * and {@code DirectBuffer.cleaner()} before.
+     *
+     * @return freer of direct buffers or {@code null} if the JVM doesn't give access to cleaners.
+     */
+    private static BufferFreer createFreer() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //nothing. Java 8.
+        }
+        try {
+            Method cleaner = ByteBuffer.allocateDirect(1).getClass().getMethod("cleaner");
+            cleaner.setAccessible(true);
+            Method clean = cleaner.getReturnType().getMethod("clean");
+            clean.setAccessible(true);
+            return buffer -> clean.invoke(cleaner.invoke(buffer));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.FINE, "Direct buffers will be freed by garbage collector", e);
+            return null;
+        }
+    }
+
+    private interface BufferFreer {
+        void free(ByteBuffer buffer) throws ReflectiveOperationException;
+    }
+}
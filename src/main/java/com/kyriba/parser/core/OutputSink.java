@@ -0,0 +1,306 @@
+package com.kyriba.parser.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Buffered output of matched lines.
+ * <p>
+ * <p>Text lines are encoded to UTF-8, lines read as bytes are written as is. Every line is terminated by {@link System#lineSeparator()}.
+ * Encoded bytes are collected in a large buffer and written to {@link FileChannel} in batches.
+ * A sink is opened once per parse and reports its throughput when it is closed.</p>
+ * <p>
+ * <p>A {@link #segment() segment} is a sink without target file. It keeps lines of a single region in memory
+ * and moves them to a temporary file when its buffer is full. The temporary file is closed when the segment
+ * is {@link #trim() completed} and reopened for reading when the segment is {@link #append(OutputSink) appended}
+ * to the output, so waiting segments don't hold file descriptors.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class OutputSink implements Closeable {
+    private static final Logger logger = Logger.getLogger(OutputSink.class.getName());
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int SEGMENT_BUFFER_SIZE = 1 << 16;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final double BYTES_IN_MEGABYTE = 1024 * 1024;
+    private final File m_file;
+    private final boolean m_segment;
+    private byte[] m_buffer;
+    private final long m_openTime;
+    private FileChannel m_channel;
+    private File m_spillFile;
+    private int m_position;
+    private long m_linesCount;
+    private long m_bytesCount;
+    private long m_writeTime;
+
+    /**
+     * Open sink for the file. Existing content of the file is discarded.
+     *
+     * @param file output file.
+     * @throws IOException if the file cannot be opened for writing.
+     */
+    public OutputSink(final File file) throws IOException {
+        this(file, false, BUFFER_SIZE);
+        m_channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private OutputSink(final File file, final boolean segment, final int bufferSize) {
+        m_file = file;
+        m_segment = segment;
+        m_buffer = new byte[bufferSize];
+        m_openTime = System.nanoTime();
+    }
+
+    /**
+     * Create sink for lines of a single region.
+     *
+     * @return segment that must be {@link #append(OutputSink) appended} to the output or closed.
+     */
+    public static OutputSink segment() {
+        return new OutputSink(null, true, SEGMENT_BUFFER_SIZE);
+    }
+
+    /**
+     * Write the line and line separator.
+     *
+     * @param line text line.
+     * @throws IOException in case of writing errors.
+     */
+    public void write(final String line) throws IOException {
+        int length = line.length();
+        if (m_buffer.length - m_position < length + LINE_SEPARATOR.length) {
+            flush();
+        }
+        if (m_buffer.length - m_position >= length + LINE_SEPARATOR.length && isAscii(line)) {
+            for (int i = 0; i < length; i++) {
+                m_buffer[m_position++] = (byte) line.charAt(i);
+            }
+            m_bytesCount += length;
+        } else {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            put(bytes, 0, bytes.length);
+        }
+        put(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+        m_linesCount++;
+    }
+
+    /**
+     * Write the line as is and line separator. The line isn't transcoded, so it keeps charset of the input.
+     *
+     * @param bytes  buffer that contains the line.
+     * @param offset position of the first byte of the line.
+     * @param length number of bytes of the line without terminator.
+     * @throws IOException in case of writing errors.
+     */
+    public void writeLine(final byte[] bytes, final int offset, final int length) throws IOException {
+        put(bytes, offset, length);
+        put(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+        m_linesCount++;
+    }
+
+    /**
+     * Write bytes as is.
+     *
+     * @param bytes  source of bytes.
+     * @param offset position of the first byte.
+     * @param length number of bytes.
+     * @throws IOException in case of writing errors.
+     */
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        put(bytes, offset, length);
+    }
+
+    /**
+     * Write content of the segment to this sink. The segment is closed.
+     *
+     * @param segment segment created by {@link #segment()}.
+     * @throws IOException in case of reading\writing errors.
+     */
+    public void append(final OutputSink segment) throws IOException {
+        try {
+            if (segment.m_spillFile != null) {
+                flush();
+                long start = System.nanoTime();
+                long size;
+                try (FileChannel source = FileChannel.open(segment.m_spillFile.toPath(), StandardOpenOption.READ)) {
+                    size = source.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += source.transferTo(position, size - position, m_channel);
+                    }
+                }
+                long time = System.nanoTime() - start;
+                m_writeTime += time;
+                ParserMetrics.INSTANCE.addOutputTime(time);
+                m_bytesCount += size;
+            }
+            put(segment.m_buffer, 0, segment.m_position);
+            m_linesCount += segment.m_linesCount;
+            m_writeTime += segment.m_writeTime;
+        } finally {
+            segment.close();
+        }
+    }
+
+    /**
+     * Complete the segment: release unused part of the buffer and close the temporary file,
+     * so a completed segment keeps in memory only its lines and holds no file descriptor.
+     * Segment must not be written after that.
+     *
+     * @throws IOException in case of closing errors.
+     */
+    public void trim() throws IOException {
+        if (!m_segment) {
+            return;
+        }
+        if (m_position < m_buffer.length) {
+            m_buffer = Arrays.copyOf(m_buffer, m_position);
+        }
+        if (m_channel != null) {
+            m_channel.close();
+            m_channel = null;
+        }
+    }
+
+    /**
+     * @return number of written lines.
+     */
+    public long getLinesCount() {
+        return m_linesCount;
+    }
+
+    /**
+     * @return number of written bytes.
+     */
+    public long getBytesCount() {
+        return m_bytesCount;
+    }
+
+    /**
+     * @return time spent in writes to file in nanoseconds.
+     */
+    public long getWriteTime() {
+        return m_writeTime;
+    }
+
+    /**
+     * Write buffered bytes and close the file.
+     * Segment discards its content instead.
+     *
+     * @throws IOException in case of writing errors.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!m_segment && m_channel != null && m_channel.isOpen()) {
+                flush();
+                logThroughput();
+            }
+        } finally {
+            if (m_channel != null) {
+                m_channel.close();
+            }
+            if (m_spillFile != null && !m_spillFile.delete()) {
+                m_spillFile.deleteOnExit();
+            }
+            m_spillFile = null;
+            m_position = 0;
+        }
+    }
+
+    /**
+     * Close all sinks even if some of them fail.
+     *
+     * @param sinks sinks. Can contain {@code null} values.
+     * @throws IOException the first error of closing.
+     */
+    public static void closeAll(final OutputSink... sinks) throws IOException {
+        IOException failure = null;
+        for (OutputSink sink : sinks) {
+            try {
+                if (sink != null) {
+                    sink.close();
+                }
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void put(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (m_buffer.length - m_position < length) {
+            flush();
+        }
+        if (length > m_buffer.length) {
+            writeToChannel(ByteBuffer.wrap(bytes, offset, length));
+        } else {
+            System.arraycopy(bytes, offset, m_buffer, m_position, length);
+            m_position += length;
+        }
+        m_bytesCount += length;
+    }
+
+    /**
+     * Write buffered bytes to file.
+     *
+     * @throws IOException in case of writing errors.
+     */
+    public void flush() throws IOException {
+        if (m_position > 0) {
+            writeToChannel(ByteBuffer.wrap(m_buffer, 0, m_position));
+            m_position = 0;
+        }
+    }
+
+    private void writeToChannel(final ByteBuffer buffer) throws IOException {
+        if (m_channel == null) {
+            m_spillFile = File.createTempFile("parser", ".part");
+            m_channel = FileChannel.open(m_spillFile.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        long start = System.nanoTime();
+        while (buffer.hasRemaining()) {
+            m_channel.write(buffer);
+        }
+        long time = System.nanoTime() - start;
+        m_writeTime += time;
+        ParserMetrics.INSTANCE.addOutputTime(time);
+    }
+
+    private void logThroughput() {
+        long totalTime = System.nanoTime() - m_openTime;
+        double megabytes = m_bytesCount / BYTES_IN_MEGABYTE;
+        logger.log(Level.INFO, String.format("%d lines (%.1f MB) were written to %s. Write time %d ms (%.1f MB/s), total time %d ms (%.1f MB/s)",
+                m_linesCount, megabytes, m_file,
+                m_writeTime / 1000000, megabytes / Math.max(m_writeTime, 1) * 1e9,
+                totalTime / 1000000, megabytes / Math.max(totalTime, 1) * 1e9));
+    }
+
+    private static boolean isAscii(final String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,309 @@
+package com.kyriba.parser.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Stream of decompressed content of a gzip file.
+ * <p>
+ * <p>File is decompressed by a background thread into a bounded queue of blocks,
+ * so decompression overlaps with processing of the already decompressed content.</p>
+ * <p>
+ * <p>Files written as a sequence of independent members with known sizes (BGZF, e.g. written by {@code bgzip})
+ * are decompressed by several threads, a member per task. Members without size in the header
+ * and all the following members are decompressed sequentially by {@link GZIPInputStream}.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class ParallelGzipInputStream extends InputStream {
+    private static final int ID1 = 0x1f;
+    private static final int ID2 = 0x8b;
+    private static final int CM_DEFLATE = 8;
+    private static final int FLG_EXTRA = 4;
+    private static final int HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = 8;
+    private static final int BLOCK_SIZE = 1 << 18;
+    private static final int QUEUE_SIZE = 16;
+    private static final int MEMBERS_PER_THREAD = 4;
+    private static final byte[] END = new byte[0];
+    private final BlockingQueue<byte[]> m_blocks = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread m_decoder;
+    private volatile Throwable m_failure;
+    private volatile boolean m_closed;
+    private byte[] m_block = new byte[0];
+    private int m_position;
+    private boolean m_finished;
+
+    /**
+     * Constructor. Decompression is started immediately.
+     *
+     * @param file         gzip file.
+     * @param threadsCount number of threads that decompress members of BGZF file.
+     * @throws IllegalArgumentException if threads count is less than one.
+     */
+    public ParallelGzipInputStream(final File file, final int threadsCount) throws IllegalArgumentException {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Threads count must be positive: " + threadsCount);
+        }
+        m_decoder = new Thread(() -> decode(file, threadsCount), "gzip-decoder-" + file.getName());
+        m_decoder.setDaemon(true);
+        m_decoder.start();
+    }
+
+    /**
+     * Check gzip magic bytes at the start of the file.
+     *
+     * @param file file.
+     * @return {@code true} if the file is compressed by gzip.
+     * @throws IOException in case of reading errors.
+     */
+    public static boolean isCompressed(final File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == ID1 && in.read() == ID2;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+        return m_block[m_position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int count = Math.min(len, m_block.length - m_position);
+        System.arraycopy(m_block, m_position, b, off, count);
+        m_position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return m_block.length - m_position;
+    }
+
+    @Override
+    public void close() {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        m_decoder.interrupt();
+        m_blocks.clear();
+    }
+
+    /**
+     * Take the next block if the current one is read completely.
+     *
+     * @return {@code false} if there is no more content.
+     */
+    private boolean nextBlock() throws IOException {
+        if (m_closed) {
+            throw new IOException("Stream is closed");
+        }
+        while (m_position == m_block.length) {
+            if (m_finished) {
+                return false;
+            }
+            try {
+                m_block = m_blocks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Decompression was interrupted");
+            }
+            m_position = 0;
+            if (m_block == END) {
+                m_finished = true;
+                if (m_failure != null) {
+                    throw m_failure instanceof IOException ? (IOException) m_failure : new IOException(m_failure);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Body of the decoder thread.
+     */
+    private void decode(final File file, final int threadsCount) {
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount, task -> {
+            Thread thread = new Thread(task, "gzip-member-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = decodeMembers(channel, size, executor, threadsCount * MEMBERS_PER_THREAD);
+            if (offset < size) {
+                decodeStream(channel.position(offset));
+            }
+        } catch (ExecutionException e) {
+            m_failure = e.getCause();
+        } catch (Throwable e) {
+            m_failure = e;
+        } finally {
+            executor.shutdownNow();
+            try {
+                if (!m_closed) {
+                    m_blocks.put(END);
+                }
+            } catch (InterruptedException e) {
+                //stream was closed.
+            }
+        }
+    }
+
+    /**
+     * Decompress members with known sizes in parallel. Content of members is queued in the order of members.
+     *
+     * @return offset of the first member that has no size in the header or size of the file.
+     */
+    private long decodeMembers(final FileChannel channel, final long size, final ExecutorService executor,
+                               final int maxPending) throws IOException, InterruptedException, ExecutionException {
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        long offset = 0;
+        while (offset < size) {
+            int memberSize = getMemberSize(channel, offset);
+            if (memberSize <= 0) {
+                break;
+            }
+            ByteBuffer member = ByteBuffer.allocate(memberSize);
+            while (member.hasRemaining() && channel.read(member, offset + member.position()) > 0) {
+                //read the whole member
+            }
+            if (member.hasRemaining()) {
+                throw new EOFException("Unexpected end of gzip member at " + offset);
+            }
+            pending.add(executor.submit(() -> inflate(member.array())));
+            offset += memberSize;
+            if (pending.size() >= maxPending) {
+                put(pending.poll().get());
+            }
+        }
+        while (!pending.isEmpty()) {
+            put(pending.poll().get());
+        }
+        return offset;
+    }
+
+    private void decodeStream(final FileChannel channel) throws IOException, InterruptedException {
+        try (InputStream in = new GZIPInputStream(Channels.newInputStream(channel), BLOCK_SIZE)) {
+            while (true) {
+                byte[] block = new byte[BLOCK_SIZE];
+                int length = 0;
+                int read;
+                while (length < block.length && (read = in.read(block, length, block.length - length)) > 0) {
+                    length += read;
+                }
+                if (length == 0) {
+                    return;
+                }
+                put(length == block.length ? block : Arrays.copyOf(block, length));
+            }
+        }
+    }
+
+    private void put(final byte[] block) throws InterruptedException {
+        if (block.length > 0) {
+            m_blocks.put(block);
+        }
+    }
+
+    /**
+     * Read size of the member from BGZF extra field of its header.
+     *
+     * @return size of the member or {@code 0} if the header doesn't contain the size.
+     */
+    private static int getMemberSize(final FileChannel channel, final long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, offset);
+        if (header.position() < HEADER_SIZE || (header.get(0) & 0xff) != ID1 || (header.get(1) & 0xff) != ID2
+                || header.get(2) != CM_DEFLATE || (header.get(3) & FLG_EXTRA) == 0) {
+            return 0;
+        }
+        int extraLength = (header.get(10) & 0xff) | (header.get(11) & 0xff) << 8;
+        ByteBuffer extra = ByteBuffer.allocate(extraLength);
+        channel.read(extra, offset + HEADER_SIZE);
+        int position = 0;
+        while (position + 4 <= extra.position()) {
+            int subfieldLength = (extra.get(position + 2) & 0xff) | (extra.get(position + 3) & 0xff) << 8;
+            if (extra.get(position) == 'B' && extra.get(position + 1) == 'C' && subfieldLength == 2
+                    && position + 6 <= extra.position()) {
+                return ((extra.get(position + 4) & 0xff) | (extra.get(position + 5) & 0xff) << 8) + 1;
+            }
+            position += 4 + subfieldLength;
+        }
+        return 0;
+    }
+
+    /**
+     * Decompress a single BGZF member.
+     *
+     * @param member whole member including header and trailer.
+     * @return decompressed content.
+     * @throws IOException if the member is corrupted.
+     */
+    private static byte[] inflate(final byte[] member) throws IOException {
+        int extraLength = (member[10] & 0xff) | (member[11] & 0xff) << 8;
+        int dataStart = HEADER_SIZE + extraLength;
+        int trailer = member.length - TRAILER_SIZE;
+        if (trailer < dataStart) {
+            throw new ZipException("Gzip member is too short");
+        }
+        long crc = readInt(member, trailer) & 0xffffffffL;
+        int length = readInt(member, trailer + 4);
+        byte[] content = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, dataStart, trailer - dataStart);
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(content, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length) {
+                throw new ZipException("Size of gzip member doesn't match its trailer");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(content, 0, length);
+        if (checksum.getValue() != crc) {
+            throw new ZipException("Checksum of gzip member doesn't match its trailer");
+        }
+        return content;
+    }
+
+    private static int readInt(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+    }
+}
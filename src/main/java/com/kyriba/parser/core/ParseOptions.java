@@ -2,6 +2,7 @@ package com.kyriba.parser.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.*;
@@ -13,15 +14,21 @@ import java.util.*;
  * @author VMyakushin
  */
 public class ParseOptions {
+    private static final int MAX_TOP_COUNT = 1000;
     private Map<Filter, String> m_filters;
+    private Map<Filter, TermMatcher> m_termMatchers;
     private Set<GroupBy> m_groups;
     private File m_inputFile;
     private File m_outputFile;
+    private DateRange m_dateRange;
+    private Aggregation m_aggregation = Aggregation.EXACT;
+    private int m_topCount;
     private boolean filterAccepted;
     private boolean groupConditionAccepted;
 
     public ParseOptions() {
         m_filters = new HashMap<>();
+        m_termMatchers = new EnumMap<>(Filter.class);
         m_groups = new TreeSet<>();
         filterAccepted = false;
         groupConditionAccepted = false;
@@ -45,6 +52,53 @@ public class ParseOptions {
         return m_groups;
     }
 
+    /**
+     * Count only the most frequent usernames of every group of time conditions.
+     * Counts are estimated in fixed memory, see {@link Aggregation#TOP_USERNAMES}.
+     * USERNAME grouping condition is required for successful validity check.
+     *
+     * @param topCount number of usernames in every group, from 1 to {@value #MAX_TOP_COUNT}.
+     * @return validity check result.
+     */
+    public ResponseMessage setTopCount(String topCount) {
+        int count;
+        try {
+            count = Integer.parseInt(topCount.trim());
+        } catch (NumberFormatException e) {
+            return ResponseMessage.WRONG_TOP_COUNT;
+        }
+        if (count < 1 || count > MAX_TOP_COUNT) {
+            return ResponseMessage.WRONG_TOP_COUNT;
+        }
+        m_aggregation = Aggregation.TOP_USERNAMES;
+        m_topCount = count;
+        return ResponseMessage.SUCCESS;
+    }
+
+    /**
+     * Count distinct usernames of every group of time conditions instead of lines.
+     * Counts are estimated in fixed memory, see {@link Aggregation#DISTINCT_USERNAMES}.
+     * USERNAME must not be a grouping condition for successful validity check.
+     */
+    public void setDistinctUsernamesCounting() {
+        m_aggregation = Aggregation.DISTINCT_USERNAMES;
+        m_topCount = 0;
+    }
+
+    /**
+     * @return way to count matched lines by groups.
+     */
+    public Aggregation getAggregation() {
+        return m_aggregation;
+    }
+
+    /**
+     * @return number of usernames in every group for {@link Aggregation#TOP_USERNAMES}, otherwise zero.
+     */
+    public int getTopCount() {
+        return m_topCount;
+    }
+
     /**
      * @return filters based on user input.
      */
@@ -54,6 +108,7 @@ public class ParseOptions {
 
     /**
      * Get value of specified filter.
+     * Value of a filter with several terms is the list of terms separated by {@value Constants#FILTER_TERMS_SEPARATOR}.
      *
      * @param filter as key in map.
      * @return value of the filter.
@@ -62,6 +117,31 @@ public class ParseOptions {
         return m_filters.get(filter);
     }
 
+    /**
+     * Get terms of specified filter.
+     *
+     * @param filter as key in map.
+     * @return single value or distinct terms of the filter, {@code null} if the filter isn't specified.
+     */
+    public List<String> getFilterTerms(Filter filter) {
+        TermMatcher matcher = m_termMatchers.get(filter);
+        if (matcher != null) {
+            return matcher.getTerms();
+        }
+        String value = m_filters.get(filter);
+        return value != null ? Collections.singletonList(value) : null;
+    }
+
+    /**
+     * Get matcher of a filter with several terms.
+     *
+     * @param filter as key in map.
+     * @return matcher or {@code null} if the filter isn't specified or has a single value.
+     */
+    public TermMatcher getTermMatcher(Filter filter) {
+        return m_termMatchers.get(filter);
+    }
+
     /**
      * Creates USERNAME filter with specified value.
      *
@@ -70,10 +150,37 @@ public class ParseOptions {
      */
     public ResponseMessage setUsernameFilter(String filterValue) {
         m_filters.put(Filter.USERNAME, filterValue);
+        m_termMatchers.remove(Filter.USERNAME);
         filterAccepted = true;
         return ResponseMessage.SUCCESS;
     }
 
+    /**
+     * Creates USERNAME filter that accepts any of specified usernames.
+     * Usernames are looked up in a hash set, so number of usernames doesn't slow down filtering.
+     * Matched lines of every username are counted by {@link ParsingResults#getTermHits(Filter)}.
+     *
+     * @param terms usernames. Duplicates are ignored.
+     * @return validity check result.
+     */
+    public ResponseMessage setUsernameFilter(Collection<String> terms) {
+        return setTermsFilter(Filter.USERNAME, terms);
+    }
+
+    /**
+     * Creates USERNAME filter from user input, see {@link #parseTerms(String)}.
+     *
+     * @param input username, usernames separated by {@value Constants#FILTER_TERMS_SEPARATOR} or path to a file of usernames.
+     * @return validity check result.
+     */
+    public ResponseMessage setUsernameFilterTerms(String input) {
+        try {
+            return setUsernameFilter(parseTerms(input));
+        } catch (IOException e) {
+            return ResponseMessage.WRONG_FILTER_TERMS_FILE;
+        }
+    }
+
     /**
      * Creates DATE filter with specified value. Dates must match specified date format or validity check will fail.
      *
@@ -92,6 +199,8 @@ public class ParseOptions {
             } else {
                 String filterValue = filterDateFrom + Constants.FILTER_DATE_SEPARATOR + filterDateTo;
                 m_filters.put(Filter.DATE, filterValue);
+                m_dateRange = new DateRange(dateFrom.getTime(), dateTo.getTime(),
+                        DateCache.INSTANCE.isDayGranularity());
                 message = ResponseMessage.SUCCESS;
                 filterAccepted = true;
             }
@@ -102,6 +211,15 @@ public class ParseOptions {
         return message;
     }
 
+    /**
+     * DATE filter range resolved when the filter was set.
+     *
+     * @return range or {@code null} if DATE filter isn't specified.
+     */
+    public DateRange getDateRange() {
+        return m_dateRange;
+    }
+
     /**
      * Creates MESSAGE filter with specified value.
      * This filter checks only that parsed message {@link String#contains(CharSequence) contains} specified text.
@@ -111,6 +229,107 @@ public class ParseOptions {
      */
     public ResponseMessage setMessageFilter(String filterValue) {
         m_filters.put(Filter.MESSAGE, filterValue);
+        m_termMatchers.remove(Filter.MESSAGE);
+        filterAccepted = true;
+        return ResponseMessage.SUCCESS;
+    }
+
+    /**
+     * Creates MESSAGE filter that accepts messages which contain any of specified texts.
+     * All texts are searched in a single pass over the message by {@link TermAutomaton}.
+     * Matched lines of every text are counted by {@link ParsingResults#getTermHits(Filter)}.
+     *
+     * @param terms texts. Duplicates are ignored.
+     * @return validity check result.
+     */
+    public ResponseMessage setMessageFilter(Collection<String> terms) {
+        return setTermsFilter(Filter.MESSAGE, terms);
+    }
+
+    /**
+     * Creates MESSAGE filter from user input, see {@link #parseTerms(String)}.
+     *
+     * @param input text, texts separated by {@value Constants#FILTER_TERMS_SEPARATOR} or path to a file of texts.
+     * @return validity check result.
+     */
+    public ResponseMessage setMessageFilterTerms(String input) {
+        try {
+            return setMessageFilter(parseTerms(input));
+        } catch (IOException e) {
+            return ResponseMessage.WRONG_FILTER_TERMS_FILE;
+        }
+    }
+
+    /**
+     * Split user input to filter terms. Input that starts with {@value Constants#FILTER_TERMS_FILE_PREFIX} is a path
+     * to a text file in {@link Configuration#getInputCharset() input charset} with a term per line, empty lines are skipped.
+     * Otherwise terms are separated by {@value Constants#FILTER_TERMS_SEPARATOR}.
+     * <p>
+     * <p>{@value Constants#FILTER_TERMS_ESCAPE} followed by the separator, the file prefix or itself stands for
+     * that character, so {@code \|} is a term character and a leading {@code \@} is not a file. Other characters
+     * after {@value Constants#FILTER_TERMS_ESCAPE} are kept as they are, e.g. in Windows paths.</p>
+     *
+     * @param input user input.
+     * @return terms in the order of input.
+     * @throws IOException if the file cannot be read.
+     */
+    static List<String> parseTerms(String input) throws IOException {
+        List<String> terms = new ArrayList<>();
+        if (input.startsWith(Constants.FILTER_TERMS_FILE_PREFIX)) {
+            File file = new File(input.substring(Constants.FILTER_TERMS_FILE_PREFIX.length()).trim());
+            for (String line : Files.readAllLines(file.toPath(), Configuration.INSTANCE.getInputCharset())) {
+                if (!line.isEmpty()) {
+                    terms.add(line);
+                }
+            }
+        } else {
+            StringBuilder term = new StringBuilder();
+            int i = 0;
+            while (i < input.length()) {
+                if (input.startsWith(Constants.FILTER_TERMS_SEPARATOR, i)) {
+                    terms.add(term.toString());
+                    term.setLength(0);
+                    i += Constants.FILTER_TERMS_SEPARATOR.length();
+                } else if (input.startsWith(Constants.FILTER_TERMS_ESCAPE, i)) {
+                    i += Constants.FILTER_TERMS_ESCAPE.length();
+                    String escaped = getEscaped(input, i);
+                    if (escaped == null) {
+                        term.append(Constants.FILTER_TERMS_ESCAPE);
+                    } else {
+                        term.append(escaped);
+                        i += escaped.length();
+                    }
+                } else {
+                    term.append(input.charAt(i++));
+                }
+            }
+            terms.add(term.toString());
+        }
+        return terms;
+    }
+
+    private static String getEscaped(String input, int index) {
+        for (String special : new String[]{Constants.FILTER_TERMS_SEPARATOR, Constants.FILTER_TERMS_FILE_PREFIX,
+                Constants.FILTER_TERMS_ESCAPE}) {
+            if (input.startsWith(special, index)) {
+                return special;
+            }
+        }
+        return null;
+    }
+
+    private ResponseMessage setTermsFilter(Filter filter, Collection<String> terms) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(terms));
+        if (distinct.isEmpty() || distinct.contains("")) {
+            return ResponseMessage.WRONG_FILTER_TERMS;
+        }
+        if (distinct.size() == 1) {
+            m_filters.put(filter, distinct.get(0));
+            m_termMatchers.remove(filter);
+        } else {
+            m_filters.put(filter, String.join(Constants.FILTER_TERMS_SEPARATOR, distinct));
+            m_termMatchers.put(filter, filter.compileTerms(distinct));
+        }
         filterAccepted = true;
         return ResponseMessage.SUCCESS;
     }
@@ -191,12 +410,43 @@ public class ParseOptions {
         return filterAccepted ? ResponseMessage.SUCCESS : ResponseMessage.FILTER_IS_NOT_VALID;
     }
 
+    /**
+     * Check that queries can be parsed together.
+     *
+     * @param batch queries.
+     * @throws IllegalArgumentException if the batch is empty, queries have different input paths or the same output path.
+     */
+    static void checkBatch(final List<ParseOptions> batch) throws IllegalArgumentException {
+        if (batch.isEmpty()) {
+            throw new IllegalArgumentException("Batch of queries is empty");
+        }
+        File inputFile = batch.get(0).getInputFile();
+        Set<File> outputFiles = new HashSet<>();
+        for (ParseOptions options : batch) {
+            if (!inputFile.equals(options.getInputFile())) {
+                throw new IllegalArgumentException("All queries of a batch must have the same input path: " + options.getInputFile());
+            }
+            if (!outputFiles.add(options.getOutputFile().getAbsoluteFile())) {
+                throw new IllegalArgumentException("Queries of a batch must have different output paths: " + options.getOutputFile());
+            }
+        }
+    }
+
     /**
      * Check if current "group by" settings can be useful for log analysis.
      *
      * @return validity check result.
      */
     public ResponseMessage checkGroupingValidity() {
-        return groupConditionAccepted ? ResponseMessage.SUCCESS : ResponseMessage.GROUPING_IS_NOT_VALID;
+        if (!groupConditionAccepted) {
+            return ResponseMessage.GROUPING_IS_NOT_VALID;
+        }
+        if (m_aggregation == Aggregation.TOP_USERNAMES && !m_groups.contains(GroupBy.USERNAME)) {
+            return ResponseMessage.TOP_COUNT_REQUIRES_USERNAME;
+        }
+        if (m_aggregation == Aggregation.DISTINCT_USERNAMES && m_groups.contains(GroupBy.USERNAME)) {
+            return ResponseMessage.DISTINCT_COUNT_EXCLUDES_USERNAME;
+        }
+        return ResponseMessage.SUCCESS;
     }
 }
@@ -1,6 +1,8 @@
 package com.kyriba.parser.core;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Interface provides methods to files analysis.
@@ -16,4 +18,23 @@ public interface Parser {
      * @throws IOException in case of reading\writing errors.
      */
     ParsingResults parse(final ParseOptions options) throws IOException;
+
+    /**
+     * Method allows to run several queries over the same files.
+     * Queries are parsed one by one by default. Implementations may read every line once for all queries.
+     *
+     * @param batch user defined input parameters of queries. All queries must have the same input path
+     *              and different output paths.
+     * @return results of data analysis in the order of queries.
+     * @throws IOException              in case of reading\writing errors.
+     * @throws IllegalArgumentException if the batch is empty or queries have different input paths.
+     */
+    default List<ParsingResults> parseBatch(final List<ParseOptions> batch) throws IOException, IllegalArgumentException {
+        ParseOptions.checkBatch(batch);
+        List<ParsingResults> results = new ArrayList<>(batch.size());
+        for (ParseOptions options : batch) {
+            results.add(parse(options));
+        }
+        return results;
+    }
 }
@@ -1,8 +1,8 @@
 package com.kyriba.parser.core;
 
 import java.io.*;
-import java.nio.charset.Charset;
-import java.util.regex.Matcher;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Basic implementation of {@link Parser} allows to analysis text files.
@@ -10,6 +10,23 @@ import java.util.regex.Matcher;
  * @author VMyakushin
  */
 public class ParserBasicImpl implements Parser {
+    private final IndexStore m_indexes;
+
+    /**
+     * Constructor. Files are scanned completely.
+     */
+    public ParserBasicImpl() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param indexes storage of file indexes or {@code null} if files must be scanned completely.
+     */
+    public ParserBasicImpl(final IndexStore indexes) {
+        m_indexes = indexes;
+    }
 
     /**
      * {@inheritDoc}
@@ -19,42 +36,149 @@ public class ParserBasicImpl implements Parser {
      */
     @Override
     public ParsingResults parse(final ParseOptions options) throws IOException, IllegalArgumentException {
-        FileUtils.clearFile(options.getOutputFile());
-        ParsingResults results = new ParsingResults();
-
-        for (File file : FileUtils.getFiles(options.getInputFile())) {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-                 OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(options.getOutputFile(), true), Charset.forName("UTF-8"))) {
-                String line;
-                Matcher matcher;
-
-                while ((line = br.readLine()) != null) {
-                    boolean matchFilter = true;
-                    for (Filter filter : options.getFilters()) {
-                        matcher = filter.getPattern().matcher(line);
-                        String filterValue = options.getFilterValue(filter);
-                        if (!filterValue.isEmpty()) {
-                            if (!(matcher.find() && filter.match(matcher.group(filter.getPatternGroupName()), filterValue))) {
-                                matchFilter = false;
-                            }
-                        }
+        ParsingResults results = new ParsingResults(options);
+        boolean completed = false;
+        try {
+            LineProcessor processor = new LineProcessor(options, results);
+            List<File> files = getFiles(options);
+            ParserMetrics.INSTANCE.start(files.size());
+            try (OutputSink output = new OutputSink(options.getOutputFile())) {
+                for (File file : files) {
+                    for (FileRegion region : plan(m_indexes, file, options)) {
+                        parseRegion(region, output, processor, Configuration.INSTANCE.getThreadsCount());
                     }
+                    ParserMetrics.INSTANCE.fileCompleted();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                ParserMetrics.INSTANCE.finish();
+            }
+            completed = true;
+            return results;
+        } finally {
+            if (!completed) {
+                results.release();
+            }
+        }
+    }
 
-                    if (matchFilter) {
-                        GroupingKey key = new GroupingKey();
-                        for (GroupBy condition : options.getGroupingConditions()) {
-                            condition.processKey(line, key);
-                        }
-                        if (!key.isEmpty()) {
-                            results.add(key);
-                        }
-
-                        osw.write(line + System.lineSeparator());
-                    }
+    /**
+     * {@inheritDoc}
+     * Every file is read once for all queries and scanned completely, indexes and DATE pruning aren't used.
+     * Results of applying filters of every query are written to its own output file.
+     *
+     * @throws IllegalArgumentException in case of invalid batch or if regular expression doesn't contain named group
+     *                                  that coincides with filter.
+     */
+    @Override
+    public List<ParsingResults> parseBatch(final List<ParseOptions> batch) throws IOException, IllegalArgumentException {
+        ParseOptions.checkBatch(batch);
+        BatchLineProcessor processor = new BatchLineProcessor(batch);
+        boolean completed = false;
+        try {
+            OutputSink[] outputs = new OutputSink[batch.size()];
+            List<File> files = FileUtils.getFiles(batch.get(0).getInputFile());
+            ParserMetrics.INSTANCE.start(files.size());
+            try {
+                for (int i = 0; i < outputs.length; i++) {
+                    outputs[i] = new OutputSink(batch.get(i).getOutputFile());
+                }
+                processor.setOutputs(outputs);
+                for (File file : files) {
+                    parseRegion(new FileRegion(file, 0, file.length()), outputs[0], processor, Configuration.INSTANCE.getThreadsCount());
+                    ParserMetrics.INSTANCE.fileCompleted();
                 }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                ParserMetrics.INSTANCE.finish();
+                OutputSink.closeAll(outputs);
+            }
+            completed = true;
+            return processor.getAllResults();
+        } finally {
+            if (!completed) {
+                ParsingResults.releaseAll(processor.getAllResults());
             }
         }
+    }
 
-        return results;
+    /**
+     * Get input files. Files that cannot contain lines of DATE filter range are skipped if it's enabled by configuration.
+     *
+     * @param options user defined input parameters.
+     * @return files for analysis.
+     * @throws IOException in case of reading errors.
+     */
+    static List<File> getFiles(final ParseOptions options) throws IOException {
+        List<File> files = FileUtils.getFiles(options.getInputFile());
+        return Configuration.INSTANCE.isPruneByDate() ? FilePruner.INSTANCE.prune(files, options) : files;
+    }
+
+    /**
+     * Get regions of the file that must be parsed.
+     *
+     * @param indexes storage of file indexes or {@code null} if the file must be scanned completely.
+     * @param file    file for analysis.
+     * @param options user defined input parameters.
+     * @return regions in the order of file content. Compressed file is a single region.
+     * @throws IOException in case of reading errors.
+     */
+    static List<FileRegion> plan(final IndexStore indexes, final File file, final ParseOptions options) throws IOException {
+        if (indexes == null || ParallelGzipInputStream.isCompressed(file)) {
+            return Collections.singletonList(new FileRegion(file, 0, file.length()));
+        }
+        return indexes.plan(file, options);
+    }
+
+    /**
+     * Parse single region line by line. Matched lines are written to output.
+     * Compressed file is decompressed as a stream, its region must cover the whole file.
+     * Lines are processed as bytes, matched lines are copied to output as is.
+     *
+     * @param region         region of a file for analysis. Region must start at a line start.
+     * @param output         sink for matched lines.
+     * @param processor      processor that applies filters and collects statistic.
+     * @param decoderThreads number of threads that may decompress a compressed file.
+     * @throws IOException in case of reading\writing errors.
+     */
+    static void parseRegion(final FileRegion region, final OutputSink output, final LineProcessor processor,
+                            final int decoderThreads) throws IOException {
+        try (InputStream in = open(region, decoderThreads)) {
+            new LineSplitter().split(in, lineConsumer(output, processor));
+        }
+        processor.flushMetrics();
+    }
+
+    /**
+     * Create consumer that applies filters to lines and writes matched lines to output.
+     *
+     * @param output    sink for matched lines.
+     * @param processor processor that applies filters and collects statistic.
+     * @return consumer of lines.
+     */
+    static LineConsumer lineConsumer(final OutputSink output, final LineProcessor processor) {
+        return (bytes, offset, length) -> {
+            if (processor.process(bytes, offset, length)) {
+                output.writeLine(bytes, offset, length);
+            }
+        };
+    }
+
+    /**
+     * Open stream of the region content.
+     *
+     * @param region         region of a file. Region of a compressed file must cover the whole file.
+     * @param decoderThreads number of threads that may decompress a compressed file.
+     * @return unbuffered stream of decompressed content.
+     * @throws IOException if the file cannot be opened.
+     */
+    static InputStream open(final FileRegion region, final int decoderThreads) throws IOException {
+        File file = region.getFile();
+        if (ParallelGzipInputStream.isCompressed(file)) {
+            return new ParallelGzipInputStream(file, decoderThreads);
+        }
+        return FileUtils.openRegion(region);
     }
 }
@@ -0,0 +1,131 @@
+package com.kyriba.parser.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of {@link Parser} that continues analysis of files from the previous run.
+ * <p>
+ * <p>Every parsed file gets a {@link Checkpoint} with offset of the last parsed line and statistic of the file.
+ * The next run with the same query parses only the appended tail and merges it with the saved statistic.
+ * Files that were truncated or replaced since the last run are parsed from the start.</p>
+ * <p>
+ * <p>Incomplete last line is counted in results of the run like other parsers do, but it is never saved
+ * in the checkpoint: the offset points to its start, so the next run parses the line again when it is complete.
+ * Output file receives matched lines of the parsed tails only.</p>
+ * <p>
+ * <p>Compressed archives aren't appended, so they are parsed completely once
+ * and saved statistic is reused while the archive isn't replaced.</p>
+ *
+ * @author VMyakushin
+ */
+public class ParserIncrementalImpl extends ParserParallelImpl {
+    private static final Logger logger = Logger.getLogger(ParserIncrementalImpl.class.getName());
+    private final CheckpointStore m_store;
+
+    /**
+     * Constructor.
+     *
+     * @param threadsCount number of worker threads.
+     * @param store        storage of checkpoints.
+     * @throws IllegalArgumentException if threads count is less than one.
+     */
+    public ParserIncrementalImpl(final int threadsCount, final CheckpointStore store) throws IllegalArgumentException {
+        super(threadsCount);
+        m_store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Queries are parsed one by one, because every query has its own checkpoints.
+     */
+    @Override
+    public List<ParsingResults> parseBatch(final List<ParseOptions> batch) throws IOException, IllegalArgumentException {
+        ParseOptions.checkBatch(batch);
+        List<ParsingResults> results = new ArrayList<>(batch.size());
+        for (ParseOptions options : batch) {
+            results.add(parse(options));
+        }
+        return results;
+    }
+
+    @Override
+    protected void parseRegion(final FileRegion region, final OutputSink output, final LineProcessor processor,
+                               final int decoderThreads) throws IOException {
+        File file = region.getFile();
+        ParseOptions options = processor.getOptions();
+        Checkpoint checkpoint = m_store.load(options, file);
+        if (ParallelGzipInputStream.isCompressed(file)) {
+            parseArchive(region, checkpoint, output, processor, decoderThreads);
+            return;
+        }
+        ParsingResults fileResults;
+        long offset;
+        if (checkpoint != null && checkpoint.isValidFor(file)) {
+            fileResults = checkpoint.getResults();
+            offset = checkpoint.getOffset();
+            logger.log(Level.FINE, String.format("%s is parsed from offset %d", file, offset));
+        } else {
+            if (checkpoint != null) {
+                logger.log(Level.INFO, "File was truncated or replaced and will be parsed from the start: " + file);
+                checkpoint.getResults().release();
+            }
+            fileResults = new ParsingResults(options);
+            offset = 0;
+        }
+
+        ParsingResults tailResults = new ParsingResults(options);
+        try {
+            LineProcessor fileProcessor = new LineProcessor(options, fileResults);
+            LineProcessor tailProcessor = new LineProcessor(options, tailResults);
+            TailReader reader = new TailReader();
+            long end;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                end = reader.read(channel, offset, ParserBasicImpl.lineConsumer(output, fileProcessor));
+                if (channel.size() > end) { //incomplete last line is counted by this run only.
+                    reader.read(channel, end, ParserBasicImpl.lineConsumer(output, tailProcessor), true);
+                }
+            }
+            fileProcessor.flushMetrics();
+            tailProcessor.flushMetrics();
+            m_store.save(options, file, Checkpoint.create(file, end, fileResults));
+            processor.getResults().merge(fileResults);
+            processor.getResults().merge(tailResults);
+        } finally {
+            ParsingResults.releaseAll(Arrays.asList(fileResults, tailResults));
+        }
+    }
+
+    private void parseArchive(final FileRegion region, final Checkpoint checkpoint, final OutputSink output,
+                              final LineProcessor processor, final int decoderThreads) throws IOException {
+        File file = region.getFile();
+        ParseOptions options = processor.getOptions();
+        if (checkpoint != null && checkpoint.getOffset() == file.length() && checkpoint.isValidFor(file)) {
+            logger.log(Level.FINE, "Archive was parsed by previous run: " + file);
+            try {
+                processor.getResults().merge(checkpoint.getResults());
+            } finally {
+                checkpoint.getResults().release();
+            }
+            return;
+        }
+        if (checkpoint != null) {
+            checkpoint.getResults().release();
+        }
+        ParsingResults fileResults = new ParsingResults(options);
+        try {
+            ParserBasicImpl.parseRegion(region, output, new LineProcessor(options, fileResults), decoderThreads);
+            m_store.save(options, file, Checkpoint.create(file, file.length(), fileResults));
+            processor.getResults().merge(fileResults);
+        } finally {
+            fileResults.release();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.kyriba.parser.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of {@link Parser} that splits every file to chunks and parses chunks in parallel.
+ * <p>
+ * <p>Chunks are aligned to line boundaries, so every line belongs to exactly one chunk.
+ * Every chunk is memory-mapped and split to lines by {@link LineSplitter} the same way as {@link BufferedReader#readLine()} does.
+ * The input charset must encode line feed as a single byte (e.g. UTF-8).</p>
+ * <p>
+ * <p>Compressed files cannot be mapped and are parsed as a stream by {@link ParserParallelImpl}.</p>
+ *
+ * @author VMyakushin
+ */
+public class ParserMappedImpl extends ParserParallelImpl {
+    private static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE / 2;
+    private static final int PROBE_SIZE = 8192;
+    private final long m_chunkSize;
+
+    /**
+     * Constructor.
+     *
+     * @param threadsCount number of worker threads.
+     * @param chunkSize    approximate size of a chunk in bytes. Chunk is extended to the end of its last line.
+     * @throws IllegalArgumentException if threads count or chunk size is less than one.
+     */
+    public ParserMappedImpl(final int threadsCount, final long chunkSize) throws IllegalArgumentException {
+        this(threadsCount, chunkSize, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threadsCount number of worker threads.
+     * @param chunkSize    approximate size of a chunk in bytes. Chunk is extended to the end of its last line.
+     * @param indexes      storage of file indexes or {@code null} if files must be scanned completely.
+     * @throws IllegalArgumentException if threads count or chunk size is less than one.
+     */
+    public ParserMappedImpl(final int threadsCount, final long chunkSize, final IndexStore indexes) throws IllegalArgumentException {
+        super(threadsCount, indexes);
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be in range [1, " + MAX_CHUNK_SIZE + "]: " + chunkSize);
+        }
+        m_chunkSize = chunkSize;
+    }
+
+    /**
+     * Split region to chunks. Every chunk except the last one ends with line feed.
+     *
+     * @param region region of a file for analysis.
+     * @return chunks in the order of file content.
+     * @throws IOException in case of reading errors.
+     */
+    @Override
+    protected List<FileRegion> split(final FileRegion region) throws IOException {
+        List<FileRegion> regions = new ArrayList<>();
+        File file = region.getFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = Math.min(region.getEnd(), channel.size());
+            ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+            long start = region.getStart();
+            while (start < size) {
+                long end = start + m_chunkSize;
+                end = end < size ? nextLineStart(channel, end, size, probe) : size;
+                regions.add(new FileRegion(file, start, end));
+                start = end;
+            }
+        }
+        return regions;
+    }
+
+    @Override
+    protected void parseRegion(final FileRegion region, final OutputSink output, final LineProcessor processor,
+                               final int decoderThreads) throws IOException {
+        if (ParallelGzipInputStream.isCompressed(region.getFile())) {
+            super.parseRegion(region, output, processor, decoderThreads);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(region.getFile().toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, region.getStart(), region.getLength());
+            new LineSplitter().split(buffer, ParserBasicImpl.lineConsumer(output, processor));
+        }
+        processor.flushMetrics();
+    }
+
+    /**
+     * Find position next to the first line feed at or after {@code position - 1}.
+     *
+     * @return position of a line start or size of the file if there are no more line feeds.
+     */
+    private static long nextLineStart(final FileChannel channel, final long position, final long size, final ByteBuffer probe) throws IOException {
+        long current = position - 1;
+        while (current < size) {
+            probe.clear();
+            int read = channel.read(probe, current);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,296 @@
+package com.kyriba.parser.core;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Live metrics of parsing. Singleton.
+ * <p>
+ * <p>Metrics are disabled by default. When they are {@link #enable() enabled}, they are registered
+ * in the platform MBean server as {@value #OBJECT_NAME} and can be {@link #reportProgress(PrintStream, long) printed}
+ * periodically while files are parsed.</p>
+ * <p>
+ * <p>Parsing threads count lines and times in their own {@link Recorder recorders} and add them to the shared counters in batches,
+ * so threads don't contend on every line. Stage times are measured for every {@value #TIME_SAMPLING}th line only and scaled,
+ * so they are estimates. Read bytes are counted as length of a line plus line feed, that is exact for ASCII files with LF line endings.</p>
+ * <p>
+ * <p>Thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public enum ParserMetrics implements ParserMetricsMXBean {
+    INSTANCE;
+
+    private static final Logger logger = Logger.getLogger(ParserMetrics.class.getName());
+    private static final String OBJECT_NAME = "com.kyriba.parser:type=ParserMetrics";
+    private static final int TIME_SAMPLING = 64;
+    private static final int FLUSH_LINES = 4096;
+    private static final Filter[] FILTERS = Filter.values();
+    private static final double BYTES_IN_MEGABYTE = 1024 * 1024;
+    private final LongAdder m_bytesRead = new LongAdder();
+    private final LongAdder m_linesRead = new LongAdder();
+    private final LongAdder[] m_matchedLines = new LongAdder[Filter.values().length];
+    private final LongAdder m_regexTime = new LongAdder();
+    private final LongAdder m_groupingTime = new LongAdder();
+    private final LongAdder m_outputTime = new LongAdder();
+    private final AtomicInteger m_filesCompleted = new AtomicInteger();
+    private volatile int m_filesTotal;
+    private volatile long m_startTime = System.nanoTime();
+    private volatile long m_finishTime = -1;
+    private volatile boolean m_enabled;
+
+    ParserMetrics() {
+        for (int i = 0; i < m_matchedLines.length; i++) {
+            m_matchedLines[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Enable metrics and register them in the platform MBean server.
+     */
+    public synchronized void enable() {
+        if (m_enabled) {
+            return;
+        }
+        m_enabled = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Parser metrics cannot be registered as MBean", e);
+        }
+    }
+
+    /**
+     * @return {@code true} if metrics are collected.
+     */
+    public boolean isEnabled() {
+        return m_enabled;
+    }
+
+    /**
+     * Create recorder for a parsing thread.
+     *
+     * @return new recorder or {@code null} if metrics are disabled.
+     */
+    public Recorder createRecorder() {
+        return m_enabled ? new Recorder() : null;
+    }
+
+    /**
+     * Reset all counters at the start of a parse.
+     *
+     * @param filesCount number of files of the parse.
+     */
+    public void start(final int filesCount) {
+        m_bytesRead.reset();
+        m_linesRead.reset();
+        for (LongAdder matched : m_matchedLines) {
+            matched.reset();
+        }
+        m_regexTime.reset();
+        m_groupingTime.reset();
+        m_outputTime.reset();
+        m_filesCompleted.set(0);
+        m_filesTotal = filesCount;
+        m_finishTime = -1;
+        m_startTime = System.nanoTime();
+    }
+
+    /**
+     * Stop the clock of the parse.
+     */
+    public void finish() {
+        m_finishTime = System.nanoTime();
+    }
+
+    /**
+     * Count a completely parsed file.
+     */
+    public void fileCompleted() {
+        m_filesCompleted.incrementAndGet();
+    }
+
+    /**
+     * @param time time of a write to output file in nanoseconds.
+     */
+    public void addOutputTime(final long time) {
+        if (m_enabled) {
+            m_outputTime.add(time);
+        }
+    }
+
+    /**
+     * Print progress line to the stream periodically until the returned handle is closed.
+     *
+     * @param out             stream for progress lines.
+     * @param intervalSeconds interval between progress lines in seconds.
+     * @return handle that stops printing.
+     */
+    public Closeable reportProgress(final PrintStream out, final long intervalSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "parser-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> out.println(getProgress()), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return executor::shutdownNow;
+    }
+
+    /**
+     * @return single line description of the current parse.
+     */
+    public String getProgress() {
+        StringBuilder matched = new StringBuilder();
+        for (Map.Entry<String, Long> entry : getMatchedLines().entrySet()) {
+            matched.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return String.format("Progress: %d of %d files, %d lines (%.0f lines/s), %.1f MB (%.1f MB/s), matched:%s,"
+                        + " regex %d ms, grouping %d ms, output %d ms",
+                getFilesCompleted(), getFilesTotal(), getLinesRead(), getLinesPerSecond(),
+                getBytesRead() / BYTES_IN_MEGABYTE, getBytesPerSecond() / BYTES_IN_MEGABYTE,
+                matched.length() > 0 ? matched : " -", getRegexTime(), getGroupingTime(), getOutputTime());
+    }
+
+    @Override
+    public long getBytesRead() {
+        return m_bytesRead.sum();
+    }
+
+    @Override
+    public long getLinesRead() {
+        return m_linesRead.sum();
+    }
+
+    @Override
+    public Map<String, Long> getMatchedLines() {
+        Map<String, Long> matched = new LinkedHashMap<>();
+        for (Filter filter : FILTERS) {
+            long count = m_matchedLines[filter.ordinal()].sum();
+            if (count > 0) {
+                matched.put(filter.name(), count);
+            }
+        }
+        return matched;
+    }
+
+    @Override
+    public long getRegexTime() {
+        return TimeUnit.NANOSECONDS.toMillis(m_regexTime.sum());
+    }
+
+    @Override
+    public long getGroupingTime() {
+        return TimeUnit.NANOSECONDS.toMillis(m_groupingTime.sum());
+    }
+
+    @Override
+    public long getOutputTime() {
+        return TimeUnit.NANOSECONDS.toMillis(m_outputTime.sum());
+    }
+
+    @Override
+    public int getFilesCompleted() {
+        return m_filesCompleted.get();
+    }
+
+    @Override
+    public int getFilesTotal() {
+        return m_filesTotal;
+    }
+
+    @Override
+    public long getElapsedTime() {
+        long finishTime = m_finishTime;
+        return TimeUnit.NANOSECONDS.toMillis((finishTime >= 0 ? finishTime : System.nanoTime()) - m_startTime);
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        return getLinesRead() * 1000.0 / Math.max(getElapsedTime(), 1);
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytesRead() * 1000.0 / Math.max(getElapsedTime(), 1);
+    }
+
+    /**
+     * Counters of a single parsing thread.
+     * <p>
+     * <p>Not thread-safe.</p>
+     */
+    public static final class Recorder {
+        private final long[] m_matchedLines = new long[FILTERS.length];
+        private long m_bytesRead;
+        private long m_linesRead;
+        private long m_regexTime;
+        private long m_groupingTime;
+
+        private Recorder() {
+        }
+
+        /**
+         * Count a read line.
+         *
+         * @param length length of the line in bytes without line terminator.
+         * @return {@code true} if stage times of the line must be measured.
+         */
+        boolean lineRead(final int length) {
+            m_bytesRead += length + 1;
+            m_linesRead++;
+            return m_linesRead % TIME_SAMPLING == 0;
+        }
+
+        void filterMatched(final Filter filter) {
+            m_matchedLines[filter.ordinal()]++;
+        }
+
+        /**
+         * @param regexTime    time of filters of a measured line in nanoseconds.
+         * @param groupingTime time of grouping of a measured line in nanoseconds.
+         */
+        void addTimes(final long regexTime, final long groupingTime) {
+            m_regexTime += regexTime * TIME_SAMPLING;
+            m_groupingTime += groupingTime * TIME_SAMPLING;
+            if (m_linesRead % FLUSH_LINES == 0) {
+                flush();
+            }
+        }
+
+        /**
+         * Add counted values to the shared counters.
+         */
+        void flush() {
+            ParserMetrics metrics = INSTANCE;
+            metrics.m_bytesRead.add(m_bytesRead);
+            metrics.m_linesRead.add(m_linesRead);
+            for (int i = 0; i < m_matchedLines.length; i++) {
+                metrics.m_matchedLines[i].add(m_matchedLines[i]);
+                m_matchedLines[i] = 0;
+            }
+            metrics.m_regexTime.add(m_regexTime);
+            metrics.m_groupingTime.add(m_groupingTime);
+            m_bytesRead = 0;
+            m_linesRead = 0;
+            m_regexTime = 0;
+            m_groupingTime = 0;
+        }
+    }
+}
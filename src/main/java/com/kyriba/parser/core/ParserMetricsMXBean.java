@@ -0,0 +1,67 @@
+package com.kyriba.parser.core;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ParserMetrics}.
+ * <p>
+ * <p>Values describe the current or the last parse. Times are in milliseconds.</p>
+ *
+ * @author VMyakushin
+ */
+public interface ParserMetricsMXBean {
+    /**
+     * @return number of read bytes.
+     */
+    long getBytesRead();
+
+    /**
+     * @return number of read lines.
+     */
+    long getLinesRead();
+
+    /**
+     * @return number of lines that passed every specified filter, by name of the filter.
+     */
+    Map<String, Long> getMatchedLines();
+
+    /**
+     * @return time spent in field extraction and filter matching.
+     */
+    long getRegexTime();
+
+    /**
+     * @return time spent in building of grouping keys and counting.
+     */
+    long getGroupingTime();
+
+    /**
+     * @return time spent in writes of output files.
+     */
+    long getOutputTime();
+
+    /**
+     * @return number of completely parsed files.
+     */
+    int getFilesCompleted();
+
+    /**
+     * @return number of files of the parse.
+     */
+    int getFilesTotal();
+
+    /**
+     * @return time since start of the parse.
+     */
+    long getElapsedTime();
+
+    /**
+     * @return average number of read lines per second.
+     */
+    double getLinesPerSecond();
+
+    /**
+     * @return average number of read bytes per second.
+     */
+    double getBytesPerSecond();
+}
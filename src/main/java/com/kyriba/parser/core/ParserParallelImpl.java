@@ -0,0 +1,370 @@
+package com.kyriba.parser.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of {@link Parser} that spreads files across a pool of worker threads.
+ * <p>
+ * <p>Files are {@link #split(FileRegion) split} to regions. Every worker takes the next region from the common list
+ * and collects statistic to its own {@link ParsingResults}. The largest regions are taken first,
+ * so a large region at the end of the list doesn't keep a single worker busy when others have finished. Results of all workers are merged when all regions are parsed.
+ * Matched lines of every region are collected by its own {@link OutputSink#segment() segment}. A segment is appended to the output
+ * as soon as its region and all preceding regions are parsed, so output and statistic are the same as {@link ParserBasicImpl} produces
+ * and completed segments don't wait for the whole input.</p>
+ * <p>
+ * <p>If {@link IndexStore indexes} are specified, only regions of files planned by indexes are parsed.
+ * Compressed files are never split and always parsed as a whole.</p>
+ * <p>
+ * <p>{@link #parseBatch(List) Batch} of queries is parsed in a single pass: every region is read once,
+ * every query has its own segments, results and output file.</p>
+ *
+ * @author VMyakushin
+ */
+public class ParserParallelImpl implements Parser {
+    private static final Logger logger = Logger.getLogger(ParserParallelImpl.class.getName());
+    private static final int WORKER_EXITED = -1;
+    private final int m_threadsCount;
+    private final IndexStore m_indexes;
+
+    /**
+     * Constructor. Number of workers is equal to number of available processors.
+     */
+    public ParserParallelImpl() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threadsCount number of worker threads.
+     * @throws IllegalArgumentException if threads count is less than one.
+     */
+    public ParserParallelImpl(final int threadsCount) throws IllegalArgumentException {
+        this(threadsCount, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threadsCount number of worker threads.
+     * @param indexes      storage of file indexes or {@code null} if files must be scanned completely.
+     * @throws IllegalArgumentException if threads count is less than one.
+     */
+    public ParserParallelImpl(final int threadsCount, final IndexStore indexes) throws IllegalArgumentException {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Threads count must be positive: " + threadsCount);
+        }
+        m_threadsCount = threadsCount;
+        m_indexes = indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Results of applying filters are written to file specified by {@link ParseOptions options}.
+     *
+     * @throws IllegalArgumentException in case of regular expression doesn't contain named group that coincides with filter.
+     */
+    @Override
+    public ParsingResults parse(final ParseOptions options) throws IOException, IllegalArgumentException {
+        List<File> files = ParserBasicImpl.getFiles(options);
+        List<List<FileRegion>> plans = new ArrayList<>(files.size());
+        for (File file : files) {
+            plans.add(ParserBasicImpl.plan(m_indexes, file, options));
+        }
+        return parse(files, plans, Collections.singletonList(options)).get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every region is read once for all queries and files are scanned completely, indexes and DATE pruning aren't used.
+     * Results of applying filters of every query are written to its own output file.
+     *
+     * @throws IllegalArgumentException in case of invalid batch or if regular expression doesn't contain named group
+     *                                  that coincides with filter.
+     */
+    @Override
+    public List<ParsingResults> parseBatch(final List<ParseOptions> batch) throws IOException, IllegalArgumentException {
+        ParseOptions.checkBatch(batch);
+        List<File> files = FileUtils.getFiles(batch.get(0).getInputFile());
+        List<List<FileRegion>> plans = new ArrayList<>(files.size());
+        for (File file : files) {
+            plans.add(ParserBasicImpl.plan(null, file, batch.get(0)));
+        }
+        return parse(files, plans, batch);
+    }
+
+    /**
+     * Parse planned regions of files by workers.
+     *
+     * @param files files for analysis.
+     * @param plans regions of every file.
+     * @param batch queries. Every region is read once for all queries.
+     * @return results in the order of queries.
+     */
+    private List<ParsingResults> parse(final List<File> files, final List<List<FileRegion>> plans,
+                                       final List<ParseOptions> batch) throws IOException {
+        ParserMetrics.INSTANCE.start(files.size());
+        final List<FileRegion> regions = new ArrayList<>();
+        final AtomicIntegerArray remainingRegions = new AtomicIntegerArray(files.size());
+        final List<Integer> regionFiles = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            boolean compressed = ParallelGzipInputStream.isCompressed(files.get(i));
+            int firstRegion = regions.size();
+            for (FileRegion region : plans.get(i)) {
+                regions.addAll(compressed ? Collections.singletonList(region) : split(region));
+            }
+            remainingRegions.set(i, regions.size() - firstRegion);
+            if (regions.size() == firstRegion) {
+                ParserMetrics.INSTANCE.fileCompleted();
+            }
+            for (int j = firstRegion; j < regions.size(); j++) {
+                regionFiles.add(i);
+            }
+        }
+        final OutputSink[][] segments = new OutputSink[regions.size()][];
+        final BlockingQueue<Integer> completedRegions = new LinkedBlockingQueue<>();
+        final int[] schedule = schedule(regions);
+        final AtomicInteger nextRegion = new AtomicInteger();
+        int workersCount = Math.max(1, Math.min(m_threadsCount, regions.size()));
+        final int decoderThreads = Math.max(1, m_threadsCount / workersCount);
+        logger.log(Level.INFO, String.format("Parsing of %d files (%d regions) started with %d workers for %d queries",
+                files.size(), regions.size(), workersCount, batch.size()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(workersCount);
+        List<Future<List<ParsingResults>>> workers = new ArrayList<>();
+        List<ParsingResults> results = new ArrayList<>(batch.size());
+        OutputSink[] outputs = new OutputSink[batch.size()];
+        int mergedWorkers = 0;
+        boolean completed = false;
+        try {
+            for (int i = 0; i < workersCount; i++) {
+                workers.add(executor.submit(() -> {
+                    BatchLineProcessor processor = new BatchLineProcessor(batch);
+                    boolean parsed = false;
+                    try {
+                        int next;
+                        while ((next = nextRegion.getAndIncrement()) < schedule.length) {
+                            int index = schedule[next];
+                            OutputSink[] regionSegments = new OutputSink[batch.size()];
+                            segments[index] = regionSegments;
+                            for (int j = 0; j < regionSegments.length; j++) {
+                                regionSegments[j] = OutputSink.segment();
+                            }
+                            processor.setOutputs(regionSegments);
+                            parseRegion(regions.get(index), regionSegments[0], processor, decoderThreads);
+                            for (OutputSink segment : regionSegments) {
+                                segment.trim();
+                            }
+                            if (remainingRegions.decrementAndGet(regionFiles.get(index)) == 0) {
+                                ParserMetrics.INSTANCE.fileCompleted();
+                            }
+                            completedRegions.add(index);
+                        }
+                        parsed = true;
+                        return processor.getAllResults();
+                    } finally {
+                        if (!parsed) {
+                            nextRegion.set(schedule.length);
+                            ParsingResults.releaseAll(processor.getAllResults());
+                        }
+                        completedRegions.add(WORKER_EXITED);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                outputs[i] = new OutputSink(batch.get(i).getOutputFile());
+            }
+            appendSegments(segments, completedRegions, workersCount, outputs);
+            for (ParseOptions options : batch) {
+                results.add(new ParsingResults(options));
+            }
+            for (Future<List<ParsingResults>> worker : workers) {
+                List<ParsingResults> workerResults = await(worker);
+                mergedWorkers++;
+                try {
+                    for (int i = 0; i < results.size(); i++) {
+                        results.get(i).merge(workerResults.get(i));
+                    }
+                } finally {
+                    ParsingResults.releaseAll(workerResults);
+                }
+            }
+            OutputSink.closeAll(outputs);
+            completed = true;
+            return results;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (!completed) {
+                nextRegion.set(schedule.length);
+                executor.shutdownNow();
+                ParsingResults.releaseAll(results);
+                releaseAll(workers.subList(Math.min(mergedWorkers, workers.size()), workers.size()));
+            }
+            ParserMetrics.INSTANCE.finish();
+            executor.shutdownNow();
+            try {
+                for (OutputSink[] regionSegments : segments) {
+                    if (regionSegments != null) {
+                        OutputSink.closeAll(regionSegments);
+                    }
+                }
+            } finally {
+                if (!completed) {
+                    OutputSink.closeAll(outputs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append segments of parsed regions to outputs in the order of regions until all workers exit.
+     * Segments of a region are appended as soon as the region and all preceding regions are parsed.
+     *
+     * @param segments         segments of regions, one per query. Appended segments are removed.
+     * @param completedRegions indexes of parsed regions and {@link #WORKER_EXITED} for every exited worker.
+     * @param workersCount     number of workers.
+     * @param outputs          outputs of queries.
+     * @throws IOException in case of reading\writing errors or if current thread was interrupted.
+     */
+    private static void appendSegments(final OutputSink[][] segments, final BlockingQueue<Integer> completedRegions,
+                                       final int workersCount, final OutputSink[] outputs) throws IOException {
+        boolean[] parsed = new boolean[segments.length];
+        int nextSegment = 0;
+        int exitedWorkers = 0;
+        while (exitedWorkers < workersCount) {
+            int region;
+            try {
+                region = completedRegions.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Parsing was interrupted");
+            }
+            if (region == WORKER_EXITED) {
+                exitedWorkers++;
+                continue;
+            }
+            parsed[region] = true;
+            for (; nextSegment < segments.length && parsed[nextSegment]; nextSegment++) {
+                OutputSink[] regionSegments = segments[nextSegment];
+                try {
+                    for (int i = 0; i < outputs.length; i++) {
+                        outputs[i].append(regionSegments[i]);
+                    }
+                } finally {
+                    OutputSink.closeAll(regionSegments);
+                    segments[nextSegment] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Order of parsing of regions: from the largest to the smallest.
+     * Regions of the same size keep their order.
+     *
+     * @param regions regions in the order of output.
+     * @return indexes of regions in the order of parsing.
+     */
+    private static int[] schedule(final List<FileRegion> regions) {
+        Integer[] order = new Integer[regions.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (first, second) -> Long.compare(regions.get(second).getLength(), regions.get(first).getLength()));
+        int[] schedule = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            schedule[i] = order[i];
+        }
+        return schedule;
+    }
+
+    /**
+     * Split region of a file to regions that can be parsed by different workers.
+     * Region isn't split by default.
+     *
+     * @param region region of a file for analysis. Whole file if there are no indexes.
+     * @return regions in the order of file content.
+     * @throws IOException in case of reading errors.
+     */
+    protected List<FileRegion> split(final FileRegion region) throws IOException {
+        return Collections.singletonList(region);
+    }
+
+    /**
+     * Parse single region. Matched lines are written to output.
+     * Threads count of the parser is shared by workers, so a worker that reads a compressed file
+     * decompresses it by its share of threads.
+     *
+     * @param region         region produced by {@link #split(FileRegion)}.
+     * @param output         sink for matched lines of the region.
+     * @param processor      processor that applies filters and collects statistic.
+     * @param decoderThreads number of threads that may decompress a compressed file.
+     * @throws IOException in case of reading\writing errors.
+     */
+    protected void parseRegion(final FileRegion region, final OutputSink output, final LineProcessor processor,
+                               final int decoderThreads) throws IOException {
+        ParserBasicImpl.parseRegion(region, output, processor, decoderThreads);
+    }
+
+    /**
+     * Wait for workers that weren't merged after a failure and release their results.
+     * Workers stop after their current regions, failed workers release their results themselves.
+     *
+     * @param workers unmerged workers.
+     */
+    private static void releaseAll(final List<Future<List<ParsingResults>>> workers) {
+        for (Future<List<ParsingResults>> worker : workers) {
+            try {
+                ParsingResults.releaseAll(worker.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                //nothing. failed worker releases its results itself.
+            }
+        }
+    }
+
+    /**
+     * Wait for the task and rethrow its failure as is.
+     *
+     * @param future task result.
+     * @param <T>    type of the result.
+     * @return result of the task.
+     * @throws IOException in case of reading\writing errors in the task or if current thread was interrupted.
+     */
+    static <T> T await(final Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parsing was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
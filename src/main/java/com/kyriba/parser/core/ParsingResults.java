@@ -1,23 +1,114 @@
 package com.kyriba.parser.core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.function.LongUnaryOperator;
 
 /**
  * Results of analysis.
  * <p>
- * <p>Encapsulates analysis statistic.</p>
+ * <p>Encapsulates analysis statistic.
+ * Grouping keys are packed by {@link GroupingKeyEncoder} and counted in {@link LongCounterTable},
+ * so counting of already known keys allocates nothing. Results created by {@link #ParsingResults(ParseOptions) options}
+ * count keys in {@link OffHeapCounterTable} if it's {@link Configuration#isOffHeapAggregation() configured}.</p>
+ * <p>
+ * <p>Results created by {@link #ParsingResults(ParseOptions) options} limit memory of counters by
+ * {@link Configuration#getAggregationMemoryLimit() configuration}: counters over the limit are spilled
+ * to temporary files by {@link SpillingCounterTable}. Counts are the same as without the limit. Statistic of such results
+ * should be read by {@link #forEachGroup(GroupVisitor)}, because {@link #getStatistic()} keeps all groups in memory,
+ * and temporary files must be deleted by {@link #release()}.</p>
+ * <p>
+ * <p>For {@link Aggregation#TOP_USERNAMES} keys are packed without USERNAME, so every key is a group of time conditions
+ * (single group if there are no time conditions). Usernames of every group are counted by its own {@link SpaceSaving} summary
+ * of fixed size, so memory doesn't depend on number of usernames. Statistic contains the most frequent usernames
+ * of every group with estimated counts, and {@link #getError(GroupingKey)} returns maximum overestimation of every count.</p>
+ * <p>
+ * <p>For {@link Aggregation#DISTINCT_USERNAMES} keys are packed the same way, and usernames of every group are added
+ * to its own {@link HyperLogLog} sketch of fixed size. Statistic contains estimated number of distinct usernames of every group.</p>
+ * <p>
+ * <p>Results created by {@link #ParsingResults(ParseOptions) options} with filters of several terms also count
+ * matched lines of every term, see {@link #getTermHits(Filter)}.</p>
  *
  * @author VMyakushin
  */
 public class ParsingResults {
+    private static final int SUMMARY_CAPACITY_FACTOR = 10;
+    private static final int SKETCH_PRECISION = 12;
+    private static final Filter[] FILTERS = Filter.values();
+    private final GroupingKeyEncoder m_encoder;
+    private final SpillingCounterTable m_counters;
+    private final Aggregation m_aggregation;
+    private final int m_topCount;
+    private final Set<GroupBy> m_timeConditions;
+    private final Map<Long, SpaceSaving> m_summaries;
+    private final Map<Long, HyperLogLog> m_sketches;
+    private final List<List<String>> m_terms;
+    private final long[][] m_termHits;
+    private long m_lastBucket;
+    private SpaceSaving m_lastSummary;
+    private HyperLogLog m_lastSketch;
+    private long m_linesCount;
     private Map<GroupingKey, BigInteger> m_statistic;
-    private BigInteger linesCount;
+    private Map<GroupingKey, Long> m_errors;
+    private long m_statisticLinesCount;
 
+    /**
+     * Constructor. Results support all grouping conditions.
+     */
     public ParsingResults() {
-        m_statistic = new HashMap<>();
-        linesCount = BigInteger.valueOf(0);
+        this(EnumSet.allOf(GroupBy.class));
+    }
+
+    /**
+     * Constructor of exact results.
+     *
+     * @param conditions grouping conditions that are used in keys.
+     */
+    public ParsingResults(final Set<GroupBy> conditions) {
+        this(conditions, Aggregation.EXACT, 0, new LongCounterTable(), 0, null);
+    }
+
+    /**
+     * Constructor. Memory of counters is limited by configuration.
+     *
+     * @param options user defined input parameters: grouping conditions and aggregation.
+     */
+    public ParsingResults(final ParseOptions options) {
+        this(options.getGroupingConditions(), options.getAggregation(), options.getTopCount(),
+                Configuration.INSTANCE.isOffHeapAggregation() && options.getAggregation() == Aggregation.EXACT
+                        ? new OffHeapCounterTable() : new LongCounterTable(),
+                Configuration.INSTANCE.getAggregationMemoryLimit(), options);
+    }
+
+    private ParsingResults(final Set<GroupBy> conditions, final Aggregation aggregation, final int topCount,
+                           final CounterTable counters, final long memoryLimit, final ParseOptions options) {
+        m_aggregation = aggregation;
+        m_topCount = topCount;
+        if (aggregation == Aggregation.EXACT) {
+            m_timeConditions = null;
+            m_encoder = new GroupingKeyEncoder(conditions);
+        } else {
+            m_timeConditions = EnumSet.noneOf(GroupBy.class);
+            m_timeConditions.addAll(conditions);
+            m_timeConditions.remove(GroupBy.USERNAME);
+            m_encoder = new GroupingKeyEncoder(m_timeConditions);
+        }
+        m_summaries = aggregation == Aggregation.TOP_USERNAMES ? new HashMap<>() : null;
+        m_sketches = aggregation == Aggregation.DISTINCT_USERNAMES ? new HashMap<>() : null;
+        m_counters = new SpillingCounterTable(counters, memoryLimit);
+        m_terms = new ArrayList<>(FILTERS.length);
+        m_termHits = new long[FILTERS.length][];
+        for (Filter filter : FILTERS) {
+            TermMatcher matcher = options != null ? options.getTermMatcher(filter) : null;
+            m_terms.add(matcher != null ? matcher.getTerms() : null);
+            if (matcher != null) {
+                m_termHits[filter.ordinal()] = new long[matcher.getTerms().size()];
+            }
+        }
     }
 
     /**
@@ -26,27 +117,370 @@ public class ParsingResults {
      * @param key grouping parameters with specified values.
      */
     public void add(final GroupingKey key) {
-        if (m_statistic.putIfAbsent(key, BigInteger.ONE) != null) {
-            m_statistic.put(key, m_statistic.get(key).add(BigInteger.ONE));
+        if (m_aggregation == Aggregation.EXACT) {
+            add(m_encoder.encode(key));
+            return;
         }
-        linesCount = linesCount.add(BigInteger.ONE);
+        long bucket = 0;
+        for (GroupBy condition : m_timeConditions) {
+            String value = key.getConditionValue(condition);
+            if (value != null) {
+                bucket = m_encoder.encode(bucket, condition, value);
+            }
+        }
+        String username = key.getConditionValue(GroupBy.USERNAME);
+        if (username != null) {
+            add(bucket, username);
+        }
+    }
+
+    /**
+     * Increment statistic for data grouped by input parameters with the same values.
+     * Used by {@link Aggregation#EXACT} results.
+     *
+     * @param packedKey non-empty key packed by {@link #getEncoder() encoder} of these results.
+     * @throws UncheckedIOException if counters cannot be spilled.
+     */
+    public void add(final long packedKey) throws UncheckedIOException {
+        m_counters.increment(packedKey, 1);
+        m_linesCount++;
+    }
+
+    /**
+     * Count the username in the group of time conditions.
+     * Used by {@link Aggregation#TOP_USERNAMES} and {@link Aggregation#DISTINCT_USERNAMES} results.
+     *
+     * @param bucket   key of time conditions packed by {@link #getEncoder() encoder} of these results. Can be empty.
+     * @param username username.
+     */
+    public void add(final long bucket, final String username) {
+        if (m_aggregation == Aggregation.TOP_USERNAMES) {
+            if (m_lastSummary == null || bucket != m_lastBucket) {
+                m_lastSummary = getSummary(bucket);
+                m_lastBucket = bucket;
+            }
+            m_lastSummary.add(username);
+        } else {
+            if (m_lastSketch == null || bucket != m_lastBucket) {
+                m_lastSketch = getSketch(bucket);
+                m_lastBucket = bucket;
+            }
+            m_lastSketch.add(username);
+        }
+        m_linesCount++;
+    }
+
+    /**
+     * Count matched line for every matched term of the filter.
+     *
+     * @param filter filter with several terms.
+     * @param terms  indexes of distinct terms matched by the line.
+     * @param count  number of indexes.
+     */
+    public void addTermHits(final Filter filter, final int[] terms, final int count) {
+        long[] hits = m_termHits[filter.ordinal()];
+        for (int i = 0; i < count; i++) {
+            hits[terms[i]]++;
+        }
+    }
+
+    /**
+     * Get number of matched lines of every term of the filter.
+     * A line that matches several terms is counted for each of them.
+     *
+     * @param filter filter.
+     * @return counts by terms in the order of user input. Empty if the filter doesn't have several terms.
+     */
+    public Map<String, Long> getTermHits(final Filter filter) {
+        Map<String, Long> hits = new LinkedHashMap<>();
+        List<String> terms = m_terms.get(filter.ordinal());
+        if (terms != null) {
+            for (int i = 0; i < terms.size(); i++) {
+                hits.put(terms.get(i), m_termHits[filter.ordinal()][i]);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Add statistic collected by other results to these results.
+     * Used to combine results of parsers that work in parallel.
+     *
+     * @param other results with the same aggregation for merging. Stay unchanged.
+     * @throws UncheckedIOException if counters cannot be spilled or spilled counters cannot be read.
+     */
+    public void merge(final ParsingResults other) throws UncheckedIOException {
+        LongUnaryOperator translation = m_encoder.getTranslation(other.m_encoder);
+        if (m_aggregation == Aggregation.EXACT) {
+            other.m_counters.forEach((key, count) -> m_counters.increment(translation.applyAsLong(key), count));
+        } else if (m_aggregation == Aggregation.TOP_USERNAMES) {
+            for (Map.Entry<Long, SpaceSaving> pair : other.m_summaries.entrySet()) {
+                getSummary(translation.applyAsLong(pair.getKey())).merge(pair.getValue());
+            }
+        } else {
+            for (Map.Entry<Long, HyperLogLog> pair : other.m_sketches.entrySet()) {
+                getSketch(translation.applyAsLong(pair.getKey())).merge(pair.getValue());
+            }
+        }
+        m_linesCount += other.m_linesCount;
+        for (int i = 0; i < m_termHits.length; i++) {
+            if (m_termHits[i] != null && other.m_termHits[i] != null) {
+                for (int j = 0; j < m_termHits[i].length; j++) {
+                    m_termHits[i][j] += other.m_termHits[i][j];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return way to count matched lines by groups.
+     */
+    public Aggregation getAggregation() {
+        return m_aggregation;
+    }
+
+    /**
+     * @return encoder of grouping keys for {@link #add(long)} and groups of time conditions for {@link #add(long, String)}.
+     */
+    public GroupingKeyEncoder getEncoder() {
+        return m_encoder;
     }
 
     /**
      * Get statistic for data grouped by grouping input parameters.
+     * The map is a read-only snapshot that is rebuilt after new lines are added.
+     * For {@link Aggregation#TOP_USERNAMES} usernames of every group go from the most frequent one.
      *
      * @return analysis statistic.
+     * @throws UncheckedIOException if spilled counters cannot be read.
      */
-    public Map<GroupingKey, BigInteger> getStatistic() {
+    public Map<GroupingKey, BigInteger> getStatistic() throws UncheckedIOException {
+        if (m_statistic == null || m_statisticLinesCount != m_linesCount) {
+            Map<GroupingKey, BigInteger> statistic;
+            if (m_aggregation == Aggregation.EXACT) {
+                statistic = new HashMap<>();
+                m_counters.forEach((key, count) -> statistic.put(m_encoder.decode(key), BigInteger.valueOf(count)));
+            } else if (m_aggregation == Aggregation.DISTINCT_USERNAMES) {
+                statistic = new HashMap<>();
+                for (Map.Entry<Long, HyperLogLog> pair : m_sketches.entrySet()) {
+                    statistic.put(m_encoder.decode(pair.getKey()), BigInteger.valueOf(pair.getValue().estimate()));
+                }
+            } else {
+                statistic = new LinkedHashMap<>();
+                Map<GroupingKey, Long> errors = new HashMap<>();
+                for (Map.Entry<Long, SpaceSaving> pair : m_summaries.entrySet()) {
+                    for (SpaceSaving.Entry entry : pair.getValue().getTop(m_topCount)) {
+                        GroupingKey key = m_encoder.decode(pair.getKey());
+                        key.add(GroupBy.USERNAME, entry.getItem());
+                        statistic.put(key, BigInteger.valueOf(entry.getCount()));
+                        errors.put(key, entry.getError());
+                    }
+                }
+                m_errors = errors;
+            }
+            m_statistic = Collections.unmodifiableMap(statistic);
+            m_statisticLinesCount = m_linesCount;
+        }
         return m_statistic;
     }
 
+    /**
+     * Visit statistic group by group without building of the whole {@link #getStatistic() statistic}.
+     * Groups are visited in unspecified order, for {@link Aggregation#TOP_USERNAMES} in the order of statistic.
+     *
+     * @param visitor visitor of groups.
+     * @throws UncheckedIOException if spilled counters cannot be read.
+     */
+    public void forEachGroup(final GroupVisitor visitor) throws UncheckedIOException {
+        if (m_aggregation == Aggregation.EXACT) {
+            m_counters.forEach((key, count) -> visitor.visit(m_encoder.decode(key), BigInteger.valueOf(count)));
+        } else {
+            getStatistic().forEach(visitor::visit);
+        }
+    }
+
+    /**
+     * Delete temporary files of spilled counters and free off-heap memory. Statistic is lost, so results must not be used after that.
+     */
+    public void release() {
+        m_counters.release();
+    }
+
+    /**
+     * @return number of temporary files of spilled counters.
+     */
+    int getRunsCount() {
+        return m_counters.getRunsCount();
+    }
+
+    /**
+     * Release all results, see {@link #release()}.
+     *
+     * @param results results. Can contain {@code null} values.
+     */
+    public static void releaseAll(final Iterable<ParsingResults> results) {
+        for (ParsingResults result : results) {
+            if (result != null) {
+                result.release();
+            }
+        }
+    }
+
+    /**
+     * Get maximum overestimation of a count in {@link #getStatistic() statistic}.
+     * True count is in range [{@code count - error}, {@code count}].
+     *
+     * @param key grouping key of the statistic.
+     * @return error. Zero if results aren't {@link Aggregation#TOP_USERNAMES}.
+     */
+    public long getError(final GroupingKey key) {
+        if (m_aggregation != Aggregation.TOP_USERNAMES) {
+            return 0;
+        }
+        getStatistic();
+        return m_errors.getOrDefault(key, 0L);
+    }
+
+    /**
+     * @return relative standard error of counts in {@link #getStatistic() statistic}.
+     * Zero if results aren't {@link Aggregation#DISTINCT_USERNAMES}.
+     */
+    public double getRelativeError() {
+        return m_aggregation == Aggregation.DISTINCT_USERNAMES ? HyperLogLog.getStandardError(SKETCH_PRECISION) : 0;
+    }
+
+    /**
+     * Write statistic to the output.
+     *
+     * Groups are streamed, every group is preceded by {@code true} and the last one is followed by {@code false}.
+     * Term hits of filters with several terms follow the groups.
+     *
+     * @param out output.
+     * @throws IOException in case of writing errors.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeLong(m_linesCount);
+        if (m_aggregation == Aggregation.EXACT) {
+            try {
+                m_counters.forEach((key, count) -> {
+                    try {
+                        out.writeBoolean(true);
+                        writeKey(out, m_encoder.decode(key));
+                        out.writeLong(count);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } else if (m_aggregation == Aggregation.TOP_USERNAMES) {
+            for (Map.Entry<Long, SpaceSaving> pair : m_summaries.entrySet()) {
+                out.writeBoolean(true);
+                writeKey(out, m_encoder.decode(pair.getKey()));
+                pair.getValue().writeTo(out);
+            }
+        } else {
+            for (Map.Entry<Long, HyperLogLog> pair : m_sketches.entrySet()) {
+                out.writeBoolean(true);
+                writeKey(out, m_encoder.decode(pair.getKey()));
+                pair.getValue().writeTo(out);
+            }
+        }
+        out.writeBoolean(false);
+        for (long[] hits : m_termHits) {
+            if (hits != null) {
+                out.writeInt(hits.length);
+                for (long count : hits) {
+                    out.writeLong(count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read statistic written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in      input.
+     * @param options user defined input parameters: grouping conditions and aggregation.
+     * @return results.
+     * @throws IOException in case of reading errors.
+     */
+    public static ParsingResults readFrom(final DataInput in, final ParseOptions options) throws IOException {
+        ParsingResults results = new ParsingResults(options);
+        results.m_linesCount = in.readLong();
+        while (in.readBoolean()) {
+            long key = results.m_encoder.encode(readKey(in));
+            if (results.m_aggregation == Aggregation.EXACT) {
+                try {
+                    results.m_counters.increment(key, in.readLong());
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            } else if (results.m_aggregation == Aggregation.TOP_USERNAMES) {
+                results.getSummary(key).merge(SpaceSaving.readFrom(in));
+            } else {
+                results.getSketch(key).merge(HyperLogLog.readFrom(in));
+            }
+        }
+        for (long[] hits : results.m_termHits) {
+            if (hits != null) {
+                if (in.readInt() != hits.length) {
+                    throw new IOException("Number of filter terms doesn't match the query");
+                }
+                for (int i = 0; i < hits.length; i++) {
+                    hits[i] = in.readLong();
+                }
+            }
+        }
+        return results;
+    }
+
     /**
      * Number of lines that was filtered during analysis.
      *
      * @return number of filtered lines.
      */
     public BigInteger countFilteredLines() {
-        return linesCount;
+        return BigInteger.valueOf(m_linesCount);
+    }
+
+    private SpaceSaving getSummary(final long bucket) {
+        return m_summaries.computeIfAbsent(bucket, key -> new SpaceSaving(m_topCount * SUMMARY_CAPACITY_FACTOR));
+    }
+
+    private HyperLogLog getSketch(final long bucket) {
+        return m_sketches.computeIfAbsent(bucket, key -> new HyperLogLog(SKETCH_PRECISION));
+    }
+
+    private static void writeKey(final DataOutput out, final GroupingKey key) throws IOException {
+        for (GroupBy condition : GroupBy.values()) {
+            String value = key.getConditionValue(condition);
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    private static GroupingKey readKey(final DataInput in) throws IOException {
+        GroupingKey key = new GroupingKey();
+        for (GroupBy condition : GroupBy.values()) {
+            if (in.readBoolean()) {
+                key.add(condition, in.readUTF());
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Visitor of statistic groups.
+     */
+    public interface GroupVisitor {
+        /**
+         * @param key   grouping key.
+         * @param count count of the group.
+         */
+        void visit(GroupingKey key, BigInteger count);
     }
 }
@@ -85,5 +85,61 @@ public enum ResponseMessage {
         public String toString() {
             return "An error occurred during configuration loading. See error log for details.";
         }
+    },
+    INDEX_PATH_IS_NOT_DEFINED {
+        @Override
+        public String toString() {
+            return "Directory for indexes is not defined. Please, check current configuration.";
+        }
+    },
+    DAEMON_IS_NOT_AVAILABLE {
+        @Override
+        public String toString() {
+            return "Daemon is not available. Please, start it by daemon script and check the port in configuration.";
+        }
+    },
+    BATCH_INPUT_IS_NOT_SAME {
+        @Override
+        public String toString() {
+            return "All queries of a batch must have the same input path.";
+        }
+    },
+    WRONG_TOP_COUNT {
+        @Override
+        public String toString() {
+            return "Wrong number of top usernames. It must be a positive integer not greater than 1000.";
+        }
+    },
+    TOP_COUNT_REQUIRES_USERNAME {
+        @Override
+        public String toString() {
+            return "Top usernames can be counted only with USERNAME grouping condition.";
+        }
+    },
+    DISTINCT_COUNT_EXCLUDES_USERNAME {
+        @Override
+        public String toString() {
+            return "Distinct usernames can be counted only without USERNAME grouping condition.";
+        }
+    },
+    WRONG_FILTER_TERMS {
+        @Override
+        public String toString() {
+            return "Wrong list of filter values. Values are separated by " + Constants.FILTER_TERMS_SEPARATOR
+                    + " and cannot be empty.";
+        }
+    },
+    WRONG_FILTER_TERMS_FILE {
+        @Override
+        public String toString() {
+            return "File of filter values cannot be read. Specify " + Constants.FILTER_TERMS_FILE_PREFIX
+                    + " and path to a text file with a value per line.";
+        }
+    },
+    WRONG_WINDOW_LENGTH {
+        @Override
+        public String toString() {
+            return "Wrong length of rolling window. It must be a positive number of minutes.";
+        }
     }
 }
@@ -0,0 +1,110 @@
+package com.kyriba.parser.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts values of a grouping condition over the last N minutes.
+ * <p>
+ * <p>Every minute has its own bucket of counters in a ring of N buckets.
+ * Buckets older than the window are reused for new minutes, so old lines are never rescanned.
+ * Every bucket keeps its own values, so values of expired minutes are released with the bucket.
+ * Lines are assigned to minutes by the time passed by the caller, see {@link LogFollower}.
+ * Lines later than the current minute, e.g. with skewed dates, are ignored.</p>
+ * <p>
+ * <p>Thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class RollingWindowCounter {
+    private static final long MINUTE = 60 * 1000;
+    private final GroupBy m_condition;
+    private final List<Map<String, long[]>> m_buckets;
+    private final long[] m_bucketMinutes;
+
+    /**
+     * Constructor.
+     *
+     * @param condition     grouping condition which values are counted, e.g. {@link GroupBy#USERNAME}.
+     * @param windowMinutes length of the window in minutes.
+     * @throws IllegalArgumentException if window length is less than one minute.
+     */
+    public RollingWindowCounter(final GroupBy condition, final int windowMinutes) throws IllegalArgumentException {
+        if (windowMinutes < 1) {
+            throw new IllegalArgumentException("Window must be at least one minute: " + windowMinutes);
+        }
+        m_condition = condition;
+        m_buckets = new ArrayList<>(windowMinutes);
+        m_bucketMinutes = new long[windowMinutes];
+        for (int i = 0; i < windowMinutes; i++) {
+            m_buckets.add(new HashMap<>());
+            m_bucketMinutes[i] = -1;
+        }
+    }
+
+    /**
+     * @return grouping condition which values are counted.
+     */
+    public GroupBy getCondition() {
+        return m_condition;
+    }
+
+    /**
+     * Count the value.
+     *
+     * @param value      value of the condition.
+     * @param timeMillis time of the line in milliseconds.
+     */
+    public void add(final String value, final long timeMillis) {
+        add(value, timeMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * Count the value. The value is ignored if the time is out of the window that ends at the current time.
+     *
+     * @param value      value of the condition.
+     * @param timeMillis time of the line in milliseconds.
+     * @param nowMillis  current time in milliseconds.
+     */
+    public synchronized void add(final String value, final long timeMillis, final long nowMillis) {
+        long minute = timeMillis / MINUTE;
+        long nowMinute = nowMillis / MINUTE;
+        if (minute > nowMinute || minute <= nowMinute - m_buckets.size()) {
+            return; //out of the window.
+        }
+        int index = (int) (minute % m_buckets.size());
+        if (m_bucketMinutes[index] != minute) {
+            if (m_bucketMinutes[index] > minute) {
+                return; //too old for the window.
+            }
+            m_buckets.set(index, new HashMap<>());
+            m_bucketMinutes[index] = minute;
+        }
+        long[] count = m_buckets.get(index).get(value);
+        if (count == null) {
+            m_buckets.get(index).put(value, new long[]{1});
+        } else {
+            count[0]++;
+        }
+    }
+
+    /**
+     * Get counts of values within the window that ends at the specified time.
+     *
+     * @param nowMillis end of the window in milliseconds.
+     * @return counts of values.
+     */
+    public synchronized Map<String, Long> getCounts(final long nowMillis) {
+        long lastMinute = nowMillis / MINUTE;
+        long firstMinute = lastMinute - m_buckets.size() + 1;
+        Map<String, Long> counts = new HashMap<>();
+        for (int i = 0; i < m_buckets.size(); i++) {
+            if (m_bucketMinutes[i] >= firstMinute && m_bucketMinutes[i] <= lastMinute) {
+                m_buckets.get(i).forEach((value, count) -> counts.merge(value, count[0], Long::sum));
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,261 @@
+package com.kyriba.parser.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Space-Saving summary of the most frequent items of a stream.
+ * <p>
+ * <p>The summary monitors at most {@code capacity} items. An item that isn't monitored replaces the item
+ * with the smallest count and inherits its count as the error. So count of a monitored item overestimates its
+ * true count by at most its error, and every item with true count greater than {@code total / capacity} is monitored.</p>
+ * <p>
+ * <p>Summaries of different parts of a stream can be {@link #merge(SpaceSaving) merged}
+ * with the same guarantees (Agarwal et al., Mergeable Summaries).</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class SpaceSaving {
+    private final int m_capacity;
+    private final Map<String, Entry> m_entries;
+    private Entry[] m_heap;
+    private int m_size;
+    private long m_total;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximum number of monitored items.
+     * @throws IllegalArgumentException if capacity is less than one.
+     */
+    public SpaceSaving(final int capacity) throws IllegalArgumentException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        m_capacity = capacity;
+        m_entries = new HashMap<>();
+        m_heap = new Entry[Math.min(capacity, 16)];
+    }
+
+    /**
+     * Count the item once.
+     *
+     * @param item item.
+     */
+    public void add(final String item) {
+        add(item, 1, 0);
+    }
+
+    /**
+     * Merge other summary into this one. Capacity of this summary is kept.
+     *
+     * @param other summary of other part of the stream. Stays unchanged.
+     */
+    public void merge(final SpaceSaving other) {
+        long thisMin = getErrorBound();
+        long otherMin = other.getErrorBound();
+        Map<String, Entry> merged = new HashMap<>();
+        for (Entry entry : getEntries()) {
+            Entry otherEntry = other.m_entries.get(entry.m_item);
+            merged.put(entry.m_item, otherEntry != null
+                    ? new Entry(entry.m_item, entry.m_count + otherEntry.m_count, entry.m_error + otherEntry.m_error)
+                    : new Entry(entry.m_item, entry.m_count + otherMin, entry.m_error + otherMin));
+        }
+        for (Entry otherEntry : other.getEntries()) {
+            if (!merged.containsKey(otherEntry.m_item)) {
+                merged.put(otherEntry.m_item, new Entry(otherEntry.m_item, otherEntry.m_count + thisMin, otherEntry.m_error + thisMin));
+            }
+        }
+        List<Entry> entries = new ArrayList<>(merged.values());
+        entries.sort(Entry.BY_COUNT);
+        long total = m_total + other.m_total;
+        clear();
+        for (Entry entry : entries.subList(0, Math.min(m_capacity, entries.size()))) {
+            add(entry.m_item, entry.m_count, entry.m_error);
+        }
+        m_total = total;
+    }
+
+    /**
+     * Get the most frequent items.
+     *
+     * @param count maximum number of items.
+     * @return copies of entries from the largest count to the smallest.
+     */
+    public List<Entry> getTop(final int count) {
+        List<Entry> entries = getEntries();
+        entries.sort(Entry.BY_COUNT);
+        return entries.subList(0, Math.min(count, entries.size()));
+    }
+
+    /**
+     * @return maximum overestimation of a count. Zero if no item was evicted.
+     */
+    public long getErrorBound() {
+        return m_size == m_capacity ? m_heap[0].m_count : 0;
+    }
+
+    /**
+     * @return total count of all added items.
+     */
+    public long getTotal() {
+        return m_total;
+    }
+
+    /**
+     * Write summary to the output.
+     *
+     * @param out output.
+     * @throws IOException in case of writing errors.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(m_capacity);
+        out.writeLong(m_total);
+        out.writeInt(m_size);
+        for (int i = 0; i < m_size; i++) {
+            out.writeUTF(m_heap[i].m_item);
+            out.writeLong(m_heap[i].m_count);
+            out.writeLong(m_heap[i].m_error);
+        }
+    }
+
+    /**
+     * Read summary written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in input.
+     * @return summary.
+     * @throws IOException in case of reading errors.
+     */
+    public static SpaceSaving readFrom(final DataInput in) throws IOException {
+        SpaceSaving summary = new SpaceSaving(in.readInt());
+        long total = in.readLong();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            summary.add(in.readUTF(), in.readLong(), in.readLong());
+        }
+        summary.m_total = total;
+        return summary;
+    }
+
+    private void add(final String item, final long count, final long error) {
+        m_total += count;
+        Entry entry = m_entries.get(item);
+        if (entry != null) {
+            entry.m_count += count;
+            siftDown(entry.m_index);
+        } else if (m_size < m_capacity) {
+            if (m_size == m_heap.length) {
+                m_heap = Arrays.copyOf(m_heap, Math.min(m_capacity, m_heap.length * 2));
+            }
+            entry = new Entry(item, count, error);
+            entry.m_index = m_size;
+            m_heap[m_size++] = entry;
+            m_entries.put(item, entry);
+            siftUp(entry.m_index);
+        } else { //replace the item with the smallest count
+            entry = m_heap[0];
+            m_entries.remove(entry.m_item);
+            entry.m_item = item;
+            entry.m_error = entry.m_count + error;
+            entry.m_count += count;
+            m_entries.put(item, entry);
+            siftDown(0);
+        }
+    }
+
+    private List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>(m_size);
+        for (int i = 0; i < m_size; i++) {
+            entries.add(new Entry(m_heap[i].m_item, m_heap[i].m_count, m_heap[i].m_error));
+        }
+        return entries;
+    }
+
+    private void clear() {
+        m_entries.clear();
+        Arrays.fill(m_heap, 0, m_size, null);
+        m_size = 0;
+        m_total = 0;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (m_heap[parent].m_count <= m_heap[index].m_count) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+            if (left < m_size && m_heap[left].m_count < m_heap[smallest].m_count) {
+                smallest = left;
+            }
+            if (right < m_size && m_heap[right].m_count < m_heap[smallest].m_count) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(final int first, final int second) {
+        Entry entry = m_heap[first];
+        m_heap[first] = m_heap[second];
+        m_heap[second] = entry;
+        m_heap[first].m_index = first;
+        m_heap[second].m_index = second;
+    }
+
+    /**
+     * Monitored item with its estimated count.
+     */
+    public static final class Entry {
+        private static final Comparator<Entry> BY_COUNT = (first, second) -> first.m_count != second.m_count
+                ? Long.compare(second.m_count, first.m_count) : first.m_item.compareTo(second.m_item);
+        private String m_item;
+        private long m_count;
+        private long m_error;
+        private int m_index;
+
+        private Entry(final String item, final long count, final long error) {
+            m_item = item;
+            m_count = count;
+            m_error = error;
+        }
+
+        /**
+         * @return item.
+         */
+        public String getItem() {
+            return m_item;
+        }
+
+        /**
+         * @return estimated count. True count is in range [{@code count - error}, {@code count}].
+         */
+        public long getCount() {
+            return m_count;
+        }
+
+        /**
+         * @return maximum overestimation of the count.
+         */
+        public long getError() {
+            return m_error;
+        }
+    }
+}
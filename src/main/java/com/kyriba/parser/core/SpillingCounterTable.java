@@ -0,0 +1,229 @@
+package com.kyriba.parser.core;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Table of {@code long} counters with {@code long} keys limited by memory budget.
+ * <p>
+ * <p>Counters are kept in a {@link CounterTable}. When number of keys reaches the budget, counters are sorted by key
+ * and written to a temporary run file, and the table is cleared. {@link #forEach(CounterTable.Visitor) Visitor}
+ * gets counters of all runs and the table merged by external k-way merge, so every key is visited once with its total count.
+ * Without spilled runs counters are visited directly from the table.</p>
+ * <p>
+ * <p>Write and read errors of run files are thrown as {@link UncheckedIOException}.
+ * Run files must be deleted by {@link #release()} when counters aren't needed anymore.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class SpillingCounterTable {
+    private static final Logger logger = Logger.getLogger(SpillingCounterTable.class.getName());
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+    private static final String RUN_PREFIX = "parser-run";
+    private final CounterTable m_table;
+    private final int m_maxKeys;
+    private final List<File> m_runs;
+
+    /**
+     * Constructor.
+     *
+     * @param table       empty table for counters in memory.
+     * @param memoryLimit memory budget of the table in bytes. Zero means that counters are never spilled.
+     */
+    public SpillingCounterTable(final CounterTable table, final long memoryLimit) {
+        m_table = table;
+        if (memoryLimit > 0) {
+            //table is resized when it's half full, so it never grows over the budget
+            long slots = Long.highestOneBit(Math.max(memoryLimit / SLOT_BYTES, 4));
+            m_maxKeys = (int) Math.min(slots / 2 - 1, Integer.MAX_VALUE);
+        } else {
+            m_maxKeys = Integer.MAX_VALUE;
+        }
+        m_runs = new ArrayList<>();
+    }
+
+    /**
+     * Add delta to the counter of the key. Counter of a new key starts from zero.
+     *
+     * @param key   non-zero key.
+     * @param delta value to add.
+     * @throws IllegalArgumentException if key is zero.
+     * @throws UncheckedIOException     if counters cannot be spilled.
+     */
+    public void increment(final long key, final long delta) throws IllegalArgumentException, UncheckedIOException {
+        m_table.increment(key, delta);
+        if (m_table.size() >= m_maxKeys) {
+            spill();
+        }
+    }
+
+    /**
+     * Visit total counters of all keys. Keys are visited in ascending order if some counters were spilled,
+     * otherwise in unspecified order.
+     *
+     * @param visitor visitor of counters.
+     * @throws UncheckedIOException if spilled counters cannot be read.
+     */
+    public void forEach(final CounterTable.Visitor visitor) throws UncheckedIOException {
+        if (m_runs.isEmpty()) {
+            m_table.forEach(visitor);
+            return;
+        }
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(m_runs.size() + 1);
+        try {
+            long[] keys = sortedKeys();
+            long[] counts = new long[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                counts[i] = m_table.get(keys[i]);
+            }
+            addCursor(cursors, new Cursor(keys, counts));
+            for (File run : m_runs) {
+                addCursor(cursors, new Cursor(run));
+            }
+            while (!cursors.isEmpty()) {
+                Cursor cursor = cursors.poll();
+                long key = cursor.m_key;
+                long count = cursor.m_count;
+                addCursor(cursors, cursor);
+                while (!cursors.isEmpty() && cursors.peek().m_key == key) {
+                    cursor = cursors.poll();
+                    count += cursor.m_count;
+                    addCursor(cursors, cursor);
+                }
+                visitor.visit(key, count);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * @return number of run files.
+     */
+    public int getRunsCount() {
+        return m_runs.size();
+    }
+
+    /**
+     * Delete run files and free memory of the table. Counters are lost.
+     */
+    public void release() {
+        m_table.release();
+        for (File run : m_runs) {
+            if (!run.delete()) {
+                logger.log(Level.WARNING, "Run file cannot be deleted: " + run);
+            }
+        }
+        m_runs.clear();
+    }
+
+    /**
+     * Write counters of the table sorted by key to a new run file and clear the table.
+     */
+    private void spill() throws UncheckedIOException {
+        long[] keys = sortedKeys();
+        try {
+            File run = File.createTempFile(RUN_PREFIX, null);
+            m_runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER_SIZE))) {
+                out.writeInt(keys.length);
+                for (long key : keys) {
+                    out.writeLong(key);
+                    out.writeLong(m_table.get(key));
+                }
+            }
+            logger.log(Level.FINE, String.format("%d counters were spilled to %s", keys.length, run));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        m_table.clear();
+    }
+
+    private long[] sortedKeys() {
+        long[] keys = new long[m_table.size()];
+        int[] size = new int[1];
+        m_table.forEach((key, count) -> keys[size[0]++] = key);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Move the cursor to the next counter and return it to the queue, or close it if it's exhausted.
+     */
+    private static void addCursor(final PriorityQueue<Cursor> cursors, final Cursor cursor) throws IOException {
+        if (cursor.next()) {
+            cursors.add(cursor);
+        } else {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Position in sorted counters of a run file or of the table.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final DataInputStream m_in;
+        private final long[] m_keys;
+        private final long[] m_counts;
+        private int m_remaining;
+        private int m_index;
+        private long m_key;
+        private long m_count;
+
+        private Cursor(final File run) throws IOException {
+            m_in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), RUN_BUFFER_SIZE));
+            m_keys = null;
+            m_counts = null;
+            m_remaining = m_in.readInt();
+        }
+
+        private Cursor(final long[] keys, final long[] counts) {
+            m_in = null;
+            m_keys = keys;
+            m_counts = counts;
+            m_remaining = keys.length;
+        }
+
+        private boolean next() throws IOException {
+            if (m_remaining == 0) {
+                return false;
+            }
+            m_remaining--;
+            if (m_in != null) {
+                m_key = m_in.readLong();
+                m_count = m_in.readLong();
+            } else {
+                m_key = m_keys[m_index];
+                m_count = m_counts[m_index++];
+            }
+            return true;
+        }
+
+        private void close() {
+            if (m_in != null) {
+                try {
+                    m_in.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Run file cannot be closed", e);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(final Cursor other) {
+            return Long.compare(m_key, other.m_key);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.kyriba.parser.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads lines that were appended to a file after known offset.
+ * <p>
+ * <p>A line is complete when it is terminated by line feed, carriage return or carriage return followed by line feed,
+ * like lines of {@link java.io.BufferedReader#readLine()}.
+ * Incomplete last line can be passed to the consumer too, but it is always left for the next read:
+ * the returned offset points to a line start, so a line is never cut by the offset.
+ * Lines are passed to the consumer as bytes without decoding.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class TailReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int LINE_BUFFER_SIZE = 1024;
+    private final ByteBuffer m_buffer;
+    private byte[] m_line;
+    private long m_lineStart;
+
+    public TailReader() {
+        m_buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        m_line = new byte[LINE_BUFFER_SIZE];
+    }
+
+    /**
+     * Read complete lines from the offset up to the current end of the channel.
+     *
+     * @param channel  channel of the file.
+     * @param offset   position of a line start.
+     * @param consumer consumer of the lines.
+     * @return position next to the last complete line.
+     * @throws IOException in case of reading errors or errors of the consumer.
+     */
+    public long read(final FileChannel channel, final long offset, final LineConsumer consumer) throws IOException {
+        return read(channel, offset, consumer, false);
+    }
+
+    /**
+     * Read lines from the offset up to the current end of the channel.
+     *
+     * @param channel    channel of the file.
+     * @param offset     position of a line start.
+     * @param consumer   consumer of the lines.
+     * @param incomplete {@code true} to pass incomplete last line to the consumer too.
+     * @return position next to the last complete line, i.e. start of the incomplete line if there is one.
+     * @throws IOException in case of reading errors or errors of the consumer.
+     */
+    public long read(final FileChannel channel, final long offset, final LineConsumer consumer,
+                     final boolean incomplete) throws IOException {
+        long size = channel.size();
+        boolean afterReturn = offset > 0 && readByte(channel, offset - 1) == '\r';
+        long position = offset;
+        long lineStart = offset;
+        int length = 0;
+
+        while (position < size) {
+            m_buffer.clear();
+            if (size - position < m_buffer.capacity()) {
+                m_buffer.limit((int) (size - position));
+            }
+            int read = channel.read(m_buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte current = m_buffer.get(i);
+                if (current == '\n' && afterReturn) {
+                    afterReturn = false;
+                    lineStart = position + i + 1;
+                } else if (current == '\n' || current == '\r') {
+                    accept(consumer, lineStart, length);
+                    afterReturn = current == '\r';
+                    length = 0;
+                    lineStart = position + i + 1;
+                } else {
+                    afterReturn = false;
+                    if (length == m_line.length) {
+                        m_line = Arrays.copyOf(m_line, length * 2);
+                    }
+                    m_line[length++] = current;
+                }
+            }
+            position += read;
+        }
+        if (incomplete && position > lineStart) {
+            accept(consumer, lineStart, length);
+        }
+        return lineStart;
+    }
+
+    private void accept(final LineConsumer consumer, final long lineStart, final int length) throws IOException {
+        m_lineStart = lineStart;
+        consumer.accept(m_line, 0, length);
+    }
+
+    private int readByte(final FileChannel channel, final long position) throws IOException {
+        m_buffer.clear();
+        m_buffer.limit(1);
+        return channel.read(m_buffer, position) == 1 ? m_buffer.get(0) : -1;
+    }
+
+    /**
+     * @return position of the line passed to the consumer.
+     */
+    public long getLineStart() {
+        return m_lineStart;
+    }
+}
@@ -0,0 +1,155 @@
+package com.kyriba.parser.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * {@link TermMatcher} that finds all terms contained in the field in a single pass (Aho-Corasick automaton).
+ * <p>
+ * <p>Characters of terms are mapped to classes, other characters share class zero that always returns to the root.
+ * Failure links are folded into the transition table when the automaton is built,
+ * so every character of the field costs a single table lookup. States where a term ends are linked
+ * to the nearest state of a shorter term that ends at the same position.</p>
+ * <p>
+ * <p>Table has a row per character of terms, so its size grows with total length of terms multiplied by size of their alphabet.</p>
+ *
+ * @author VMyakushin
+ */
+class TermAutomaton implements TermMatcher {
+    private static final int LATIN_SIZE = 256;
+    private final List<String> m_terms;
+    private final int[] m_latinClasses;
+    private final char[] m_otherChars;
+    private final int[] m_otherClasses;
+    private final int m_classesCount;
+    private final int[] m_next;
+    private final int[] m_stateTerms;
+    private final int[] m_outputLinks;
+
+    /**
+     * Constructor.
+     *
+     * @param terms distinct non-empty terms.
+     */
+    TermAutomaton(final List<String> terms) {
+        m_terms = Collections.unmodifiableList(terms);
+        TreeSet<Character> alphabet = new TreeSet<>();
+        int statesCount = 1;
+        for (String term : terms) {
+            for (int i = 0; i < term.length(); i++) {
+                alphabet.add(term.charAt(i));
+            }
+            statesCount += term.length();
+        }
+        m_latinClasses = new int[LATIN_SIZE];
+        int othersCount = alphabet.size() - alphabet.headSet((char) LATIN_SIZE).size();
+        m_otherChars = new char[othersCount];
+        m_otherClasses = new int[othersCount];
+        int classesCount = 1;
+        int other = 0;
+        for (char c : alphabet) {
+            if (c < LATIN_SIZE) {
+                m_latinClasses[c] = classesCount++;
+            } else {
+                m_otherChars[other] = c;
+                m_otherClasses[other++] = classesCount++;
+            }
+        }
+        m_classesCount = classesCount;
+
+        int[] next = new int[statesCount * classesCount];
+        Arrays.fill(next, -1);
+        int[] stateTerms = new int[statesCount];
+        Arrays.fill(stateTerms, -1);
+        int states = 1;
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            int state = 0;
+            for (int j = 0; j < term.length(); j++) {
+                int transition = state * classesCount + classOf(term.charAt(j));
+                if (next[transition] < 0) {
+                    next[transition] = states++;
+                }
+                state = next[transition];
+            }
+            stateTerms[state] = i;
+        }
+        m_next = Arrays.copyOf(next, states * classesCount);
+        m_stateTerms = Arrays.copyOf(stateTerms, states);
+        m_outputLinks = new int[states];
+        link(new int[states]);
+    }
+
+    /**
+     * Replace missed transitions by transitions of failure states and set output links, in breadth-first order.
+     *
+     * @param failures scratch array for failure links.
+     */
+    private void link(final int[] failures) {
+        int[] queue = new int[failures.length];
+        int head = 0;
+        int tail = 0;
+        m_outputLinks[0] = -1;
+        for (int c = 0; c < m_classesCount; c++) {
+            int child = m_next[c];
+            if (child < 0) {
+                m_next[c] = 0;
+            } else {
+                failures[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int failure = failures[state];
+            m_outputLinks[state] = m_stateTerms[failure] >= 0 ? failure : m_outputLinks[failure];
+            int row = state * m_classesCount;
+            int failureRow = failure * m_classesCount;
+            for (int c = 0; c < m_classesCount; c++) {
+                int child = m_next[row + c];
+                if (child < 0) {
+                    m_next[row + c] = m_next[failureRow + c];
+                } else {
+                    failures[child] = m_next[failureRow + c];
+                    queue[tail++] = child;
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<String> getTerms() {
+        return m_terms;
+    }
+
+    @Override
+    public int match(final CharSequence text, final int start, final int end, final int[] found, final boolean[] seen) {
+        int count = 0;
+        int state = 0;
+        for (int i = start; i < end && count < m_terms.size(); i++) {
+            int c = classOf(text.charAt(i));
+            state = c == 0 ? 0 : m_next[state * m_classesCount + c];
+            for (int output = m_stateTerms[state] >= 0 ? state : m_outputLinks[state]; output > 0; output = m_outputLinks[output]) {
+                int term = m_stateTerms[output];
+                if (!seen[term]) {
+                    seen[term] = true;
+                    found[count++] = term;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            seen[found[i]] = false;
+        }
+        return count;
+    }
+
+    private int classOf(final char c) {
+        if (c < LATIN_SIZE) {
+            return m_latinClasses[c];
+        }
+        int index = Arrays.binarySearch(m_otherChars, c);
+        return index >= 0 ? m_otherClasses[index] : 0;
+    }
+}
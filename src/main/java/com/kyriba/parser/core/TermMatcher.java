@@ -0,0 +1,31 @@
+package com.kyriba.parser.core;
+
+import java.util.List;
+
+/**
+ * Matcher of a field against a list of filter terms at once.
+ * <p>
+ * <p>Implementations are immutable and can be shared by parsing threads.
+ * Scratch arrays of {@link #match(CharSequence, int, int, int[], boolean[])} belong to the caller.</p>
+ *
+ * @author VMyakushin
+ */
+public interface TermMatcher {
+    /**
+     * @return distinct terms in the order of user input. Indexes of matched terms refer to this list.
+     */
+    List<String> getTerms();
+
+    /**
+     * Find terms matched by the region of the text.
+     *
+     * @param text  text that contains the field.
+     * @param start position of the first character of the field.
+     * @param end   position after the last character of the field.
+     * @param found receives indexes of matched terms. Length must be not less than number of terms.
+     * @param seen  scratch flags of terms. Length must be not less than number of terms, all flags must be cleared
+     *              and are cleared again on return.
+     * @return number of distinct matched terms written to {@code found}.
+     */
+    int match(CharSequence text, int start, int end, int[] found, boolean[] seen);
+}
@@ -0,0 +1,84 @@
+package com.kyriba.parser.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link TermMatcher} that checks that the field is equal to one of the terms.
+ * <p>
+ * <p>Terms are kept in a hash table with open addressing. Hash of the field is computed over the region of the text,
+ * so the field is looked up without creation of a string.</p>
+ *
+ * @author VMyakushin
+ */
+class TermSet implements TermMatcher {
+    private final List<String> m_terms;
+    private final String[] m_slotTerms;
+    private final int[] m_slotIndexes;
+    private final int m_mask;
+
+    /**
+     * Constructor.
+     *
+     * @param terms distinct terms.
+     */
+    TermSet(final List<String> terms) {
+        m_terms = Collections.unmodifiableList(terms);
+        int slots = Integer.highestOneBit(Math.max(2, terms.size()) * 4 - 1);
+        m_slotTerms = new String[slots];
+        m_slotIndexes = new int[slots];
+        m_mask = slots - 1;
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            int slot = slot(term, 0, term.length());
+            while (m_slotTerms[slot] != null) {
+                slot = (slot + 1) & m_mask;
+            }
+            m_slotTerms[slot] = term;
+            m_slotIndexes[slot] = i;
+        }
+    }
+
+    @Override
+    public List<String> getTerms() {
+        return m_terms;
+    }
+
+    @Override
+    public int match(final CharSequence text, final int start, final int end, final int[] found, final boolean[] seen) {
+        int slot = slot(text, start, end);
+        String term;
+        while ((term = m_slotTerms[slot]) != null) {
+            if (equals(term, text, start, end)) {
+                found[0] = m_slotIndexes[slot];
+                return 1;
+            }
+            slot = (slot + 1) & m_mask;
+        }
+        return 0;
+    }
+
+    /**
+     * @return slot of {@link String#hashCode() string hash} of the region.
+     */
+    private int slot(final CharSequence text, final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        hash *= 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & m_mask;
+    }
+
+    private static boolean equals(final String term, final CharSequence text, final int start, final int end) {
+        if (term.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            if (term.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,149 @@
+package com.kyriba.parser.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Sparse index of dates in a log file.
+ * <p>
+ * <p>Index is built by {@link IndexStore#build(File)}. It contains offset of the first line of every date. Entries are recorded only while dates of lines
+ * don't decrease. If a file isn't sorted by date, the index is marked as {@link #isSorted() unsorted} and has no entries.
+ * Lines without date are ignored.</p>
+ * <p>
+ * <p>Index is valid while size and modification time of the file are the same as during the build.</p>
+ *
+ * @author VMyakushin
+ */
+public class TimeIndex {
+    private static final int INITIAL_CAPACITY = 64;
+    private final long m_fileSize;
+    private final long m_lastModified;
+    private final boolean m_sorted;
+    private final int[] m_days;
+    private final long[] m_offsets;
+
+    private TimeIndex(final long fileSize, final long lastModified, final boolean sorted, final int[] days, final long[] offsets) {
+        m_fileSize = fileSize;
+        m_lastModified = lastModified;
+        m_sorted = sorted;
+        m_days = days;
+        m_offsets = offsets;
+    }
+
+    /**
+     * @param file indexed file.
+     * @return {@code true} if the file wasn't changed since the index was built.
+     */
+    public boolean isValidFor(final File file) {
+        return file.length() == m_fileSize && file.lastModified() == m_lastModified;
+    }
+
+    /**
+     * @return {@code true} if dates of lines in the file don't decrease.
+     */
+    public boolean isSorted() {
+        return m_sorted;
+    }
+
+    /**
+     * Get region of the file that contains all lines of the date range.
+     * Index must be sorted.
+     *
+     * @param file  indexed file.
+     * @param range date range. Both bounds are exclusive.
+     * @return region from the first line after lower bound to the first line of upper bound.
+     */
+    public FileRegion getRegion(final File file, final DateRange range) {
+        int first = firstEntryAfter(range.getFromDay());
+        int last = firstEntryAfter(range.getToDay() - 1);
+        long start = first < m_days.length ? m_offsets[first] : m_fileSize;
+        long end = last < m_days.length ? m_offsets[last] : m_fileSize;
+        return new FileRegion(file, start, Math.max(start, end));
+    }
+
+    /**
+     * Write index to the output.
+     *
+     * @param out output.
+     * @throws IOException in case of writing errors.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeLong(m_fileSize);
+        out.writeLong(m_lastModified);
+        out.writeBoolean(m_sorted);
+        out.writeInt(m_days.length);
+        for (int i = 0; i < m_days.length; i++) {
+            out.writeInt(m_days[i]);
+            out.writeLong(m_offsets[i]);
+        }
+    }
+
+    /**
+     * Read index written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in input.
+     * @return index.
+     * @throws IOException in case of reading errors.
+     */
+    public static TimeIndex readFrom(final DataInput in) throws IOException {
+        long fileSize = in.readLong();
+        long lastModified = in.readLong();
+        boolean sorted = in.readBoolean();
+        int count = in.readInt();
+        int[] days = new int[count];
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            days[i] = in.readInt();
+            offsets[i] = in.readLong();
+        }
+        return new TimeIndex(fileSize, lastModified, sorted, days, offsets);
+    }
+
+    /**
+     * @return index of the first entry which day is greater than the day or number of entries.
+     */
+    private int firstEntryAfter(final int day) {
+        int index = Arrays.binarySearch(m_days, day);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Collects entries of the index while lines are read.
+     */
+    static class Builder {
+        private int[] m_days = new int[INITIAL_CAPACITY];
+        private long[] m_offsets = new long[INITIAL_CAPACITY];
+        private int m_count;
+        private boolean m_sorted = true;
+
+        /**
+         * @param day    day of the line or {@link DateCache.Entry#UNKNOWN_DAY} if the line has no date.
+         * @param offset position of the line. Lines must be added in the order of file content.
+         */
+        void add(final int day, final long offset) {
+            if (day == DateCache.Entry.UNKNOWN_DAY || !m_sorted) {
+                return;
+            }
+            if (m_count > 0 && day < m_days[m_count - 1]) {
+                m_sorted = false;
+                m_count = 0;
+            } else if (m_count == 0 || day > m_days[m_count - 1]) {
+                if (m_count == m_days.length) {
+                    m_days = Arrays.copyOf(m_days, m_count * 2);
+                    m_offsets = Arrays.copyOf(m_offsets, m_count * 2);
+                }
+                m_days[m_count] = day;
+                m_offsets[m_count] = offset;
+                m_count++;
+            }
+        }
+
+        TimeIndex build(final long fileSize, final long lastModified) {
+            return new TimeIndex(fileSize, lastModified, m_sorted,
+                    Arrays.copyOf(m_days, m_count), Arrays.copyOf(m_offsets, m_count));
+        }
+    }
+}
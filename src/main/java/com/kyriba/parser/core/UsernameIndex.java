@@ -0,0 +1,182 @@
+package com.kyriba.parser.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of usernames in blocks of a log file.
+ * <p>
+ * <p>File is divided to blocks of approximately the same size. Blocks are aligned to line boundaries.
+ * Every block has a {@link BloomFilter} of usernames captured by {@link Filter#USERNAME} in its lines,
+ * so blocks that cannot contain lines of a user are skipped.</p>
+ * <p>
+ * <p>Index is valid while size and modification time of the file are the same as during the build.</p>
+ *
+ * @author VMyakushin
+ */
+public class UsernameIndex {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private final long m_fileSize;
+    private final long m_lastModified;
+    private final long[] m_blockStarts;
+    private final BloomFilter[] m_filters;
+
+    private UsernameIndex(final long fileSize, final long lastModified, final long[] blockStarts, final BloomFilter[] filters) {
+        m_fileSize = fileSize;
+        m_lastModified = lastModified;
+        m_blockStarts = blockStarts;
+        m_filters = filters;
+    }
+
+    /**
+     * @param file indexed file.
+     * @return {@code true} if the file wasn't changed since the index was built.
+     */
+    public boolean isValidFor(final File file) {
+        return file.length() == m_fileSize && file.lastModified() == m_lastModified;
+    }
+
+    /**
+     * @return number of blocks.
+     */
+    public int getBlocksCount() {
+        return m_blockStarts.length;
+    }
+
+    /**
+     * Get parts of the region that can contain lines of any of the users.
+     * Adjacent blocks are joined to a single region.
+     *
+     * @param region    region of the indexed file.
+     * @param usernames usernames.
+     * @return regions in the order of file content. Can be empty.
+     */
+    public List<FileRegion> getRegions(final FileRegion region, final Collection<String> usernames) {
+        List<FileRegion> regions = new ArrayList<>();
+        long start = -1;
+        long end = -1;
+        for (int i = 0; i < m_blockStarts.length; i++) {
+            long blockStart = Math.max(m_blockStarts[i], region.getStart());
+            long blockEnd = Math.min(i + 1 < m_blockStarts.length ? m_blockStarts[i + 1] : m_fileSize, region.getEnd());
+            if (blockStart >= blockEnd || !mightContainAny(m_filters[i], usernames)) {
+                continue;
+            }
+            if (blockStart == end) {
+                end = blockEnd;
+            } else {
+                if (start >= 0) {
+                    regions.add(new FileRegion(region.getFile(), start, end));
+                }
+                start = blockStart;
+                end = blockEnd;
+            }
+        }
+        if (start >= 0) {
+            regions.add(new FileRegion(region.getFile(), start, end));
+        }
+        return regions;
+    }
+
+    private static boolean mightContainAny(final BloomFilter filter, final Collection<String> usernames) {
+        for (String username : usernames) {
+            if (filter.mightContain(username)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write index to the output.
+     *
+     * @param out output.
+     * @throws IOException in case of writing errors.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeLong(m_fileSize);
+        out.writeLong(m_lastModified);
+        out.writeInt(m_blockStarts.length);
+        for (int i = 0; i < m_blockStarts.length; i++) {
+            out.writeLong(m_blockStarts[i]);
+            m_filters[i].writeTo(out);
+        }
+    }
+
+    /**
+     * Read index written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in input.
+     * @return index.
+     * @throws IOException in case of reading errors.
+     */
+    public static UsernameIndex readFrom(final DataInput in) throws IOException {
+        long fileSize = in.readLong();
+        long lastModified = in.readLong();
+        int count = in.readInt();
+        long[] blockStarts = new long[count];
+        BloomFilter[] filters = new BloomFilter[count];
+        for (int i = 0; i < count; i++) {
+            blockStarts[i] = in.readLong();
+            filters[i] = BloomFilter.readFrom(in);
+        }
+        return new UsernameIndex(fileSize, lastModified, blockStarts, filters);
+    }
+
+    /**
+     * Collects usernames of blocks while lines are read.
+     */
+    static class Builder {
+        private final long m_blockSize;
+        private final List<Long> m_blockStarts = new ArrayList<>();
+        private final List<BloomFilter> m_filters = new ArrayList<>();
+        private final Set<String> m_usernames = new HashSet<>();
+        private long m_blockStart;
+
+        /**
+         * @param blockSize approximate size of a block in bytes. Block is extended to the end of its last line.
+         */
+        Builder(final long blockSize) {
+            m_blockSize = blockSize;
+        }
+
+        /**
+         * @param username username of the line or {@code null} if the line has no username.
+         * @param offset   position of the line. Lines must be added in the order of file content.
+         */
+        void add(final String username, final long offset) {
+            if (offset - m_blockStart >= m_blockSize) {
+                completeBlock();
+                m_blockStart = offset;
+            }
+            if (username != null) {
+                m_usernames.add(username);
+            }
+        }
+
+        UsernameIndex build(final long fileSize, final long lastModified) {
+            completeBlock();
+            long[] blockStarts = new long[m_blockStarts.size()];
+            for (int i = 0; i < blockStarts.length; i++) {
+                blockStarts[i] = m_blockStarts.get(i);
+            }
+            return new UsernameIndex(fileSize, lastModified, blockStarts, m_filters.toArray(new BloomFilter[0]));
+        }
+
+        private void completeBlock() {
+            BloomFilter filter = new BloomFilter(m_usernames.size(), FALSE_POSITIVE_RATE);
+            for (String username : m_usernames) {
+                filter.add(username);
+            }
+            m_blockStarts.add(m_blockStart);
+            m_filters.add(filter);
+            m_usernames.clear();
+        }
+    }
+}
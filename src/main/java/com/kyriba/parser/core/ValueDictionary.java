@@ -0,0 +1,133 @@
+package com.kyriba.parser.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dictionary that encodes string values to sequential integer identifiers.
+ * Identifiers start from one, zero is never used.
+ * <p>
+ * <p>Identifiers are kept in a hash table with open addressing. Hash of a value is computed over the region
+ * of the text, so a known value is looked up without creation of a string, only new values become strings.</p>
+ * <p>
+ * <p>Not thread-safe.</p>
+ *
+ * @author VMyakushin
+ */
+public class ValueDictionary {
+    private static final int INITIAL_SLOTS = 16;
+    private final List<String> m_values;
+    private int[] m_slotIds;
+    private int[] m_slotHashes;
+    private int m_mask;
+
+    public ValueDictionary() {
+        m_values = new ArrayList<>();
+        m_values.add(null);
+        m_slotIds = new int[INITIAL_SLOTS];
+        m_slotHashes = new int[INITIAL_SLOTS];
+        m_mask = INITIAL_SLOTS - 1;
+    }
+
+    /**
+     * Get identifier of the value. New identifier is assigned to the value if it wasn't added before.
+     *
+     * @param value value for encoding.
+     * @return positive identifier.
+     */
+    public int getId(final String value) {
+        return getId(value, 0, value.length(), value.hashCode(), value);
+    }
+
+    /**
+     * Get identifier of the region of the text. New identifier is assigned to the value if it wasn't added before.
+     *
+     * @param text  text that contains the value.
+     * @param start position of the first character of the value.
+     * @param end   position after the last character of the value.
+     * @return positive identifier.
+     */
+    public int getId(final CharSequence text, final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return getId(text, start, end, hash, null);
+    }
+
+    /**
+     * @param id identifier returned by {@link #getId(String)}.
+     * @return value of the identifier.
+     * @throws IndexOutOfBoundsException if identifier is unknown.
+     */
+    public String getValue(final int id) throws IndexOutOfBoundsException {
+        if (id < 1) {
+            throw new IndexOutOfBoundsException("Unknown identifier: " + id);
+        }
+        return m_values.get(id);
+    }
+
+    /**
+     * @return number of values in the dictionary.
+     */
+    public int size() {
+        return m_values.size() - 1;
+    }
+
+    /**
+     * @param value string of the region if it's already created, {@code null} otherwise.
+     */
+    private int getId(final CharSequence text, final int start, final int end, final int hash, final String value) {
+        int slot = slot(hash);
+        int id;
+        while ((id = m_slotIds[slot]) != 0) {
+            if (m_slotHashes[slot] == hash && equals(m_values.get(id), text, start, end)) {
+                return id;
+            }
+            slot = (slot + 1) & m_mask;
+        }
+        id = m_values.size();
+        m_values.add(value != null ? value : text.subSequence(start, end).toString());
+        m_slotIds[slot] = id;
+        m_slotHashes[slot] = hash;
+        if (id * 2 > m_mask) {
+            resize();
+        }
+        return id;
+    }
+
+    private void resize() {
+        int[] ids = m_slotIds;
+        int[] hashes = m_slotHashes;
+        m_slotIds = new int[ids.length * 2];
+        m_slotHashes = new int[ids.length * 2];
+        m_mask = m_slotIds.length - 1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0) {
+                int slot = slot(hashes[i]);
+                while (m_slotIds[slot] != 0) {
+                    slot = (slot + 1) & m_mask;
+                }
+                m_slotIds[slot] = ids[i];
+                m_slotHashes[slot] = hashes[i];
+            }
+        }
+    }
+
+    private int slot(final int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return (mixed ^ (mixed >>> 16)) & m_mask;
+    }
+
+    private static boolean equals(final String value, final CharSequence text, final int start, final int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,151 @@
+package com.kyriba.parser.core;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Statistic of results spilled by {@link Configuration#getAggregationMemoryLimit() memory limit}
+ * must be the same as statistic of results kept in memory.
+ *
+ * @author VMyakushin
+ */
+public class SpillingAggregationTest {
+    private static final int SPILL_LIMIT_MB = 1;
+    private static final int FILES_COUNT = 2;
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+    private static File s_logs;
+    private static List<File> s_files;
+    private static Map<GroupingKey, BigInteger> s_expected;
+    private final List<ParsingResults> m_results = new ArrayList<>();
+
+    @BeforeClass
+    public static void generateLogs() throws Exception {
+        s_logs = folder.newFolder("logs");
+        LogGenerator generator = new LogGenerator(42);
+        generator.setUsersCount(20000);
+        generator.setSkew(0);
+        generator.setDaysCount(30);
+        s_files = generator.generate(s_logs, FILES_COUNT, 8L * 1024 * 1024, FILES_COUNT);
+
+        loadConfiguration(0);
+        ParsingResults results = new ParserBasicImpl().parse(createOptions(s_logs));
+        try {
+            assertEquals(0, results.getRunsCount());
+            s_expected = collectGroups(results);
+        } finally {
+            results.release();
+        }
+    }
+
+    @AfterClass
+    public static void restoreConfiguration() throws IOException {
+        loadConfiguration(0);
+    }
+
+    @After
+    public void releaseResults() {
+        ParsingResults.releaseAll(m_results);
+    }
+
+    @Test
+    public void spilledResultsHaveSameGroups() throws Exception {
+        loadConfiguration(SPILL_LIMIT_MB);
+        ParsingResults results = parse(s_logs);
+
+        assertTrue("Counters must be spilled several times", results.getRunsCount() > 1);
+        assertEquals(s_expected, collectGroups(results));
+    }
+
+    @Test
+    public void mergedSpilledResultsHaveSameGroups() throws Exception {
+        loadConfiguration(SPILL_LIMIT_MB);
+        ParsingResults first = parse(s_files.get(0));
+        ParsingResults second = parse(s_files.get(1));
+        assertTrue(first.getRunsCount() > 0 && second.getRunsCount() > 0);
+
+        first.merge(second);
+
+        assertEquals(s_expected, collectGroups(first));
+    }
+
+    @Test
+    public void checkpointOfSpilledResultsHasSameGroups() throws Exception {
+        loadConfiguration(SPILL_LIMIT_MB);
+        ParsingResults results = parse(s_logs);
+        assertTrue(results.getRunsCount() > 1);
+
+        ParseOptions options = createOptions(s_logs);
+        File file = s_files.get(0);
+        CheckpointStore store = new CheckpointStore(folder.newFolder());
+        store.save(options, file, Checkpoint.create(file, file.length(), results));
+        Checkpoint checkpoint = store.load(options, file);
+
+        assertNotNull(checkpoint);
+        m_results.add(checkpoint.getResults());
+        assertEquals(s_expected, collectGroups(checkpoint.getResults()));
+    }
+
+    private ParsingResults parse(final File input) throws IOException {
+        ParsingResults results = new ParserBasicImpl().parse(createOptions(input));
+        m_results.add(results);
+        return results;
+    }
+
+    private static ParseOptions createOptions(final File input) {
+        ParseOptions options = new ParseOptions();
+        assertEquals(ResponseMessage.SUCCESS, options.setInputPath(input.getPath()));
+        assertEquals(ResponseMessage.SUCCESS, options.setOutputPath(new File(folder.getRoot(), "output.log").getPath()));
+        assertEquals(ResponseMessage.SUCCESS,
+                options.setDateFilter("01/01/2015", "31/12/2015", Configuration.INSTANCE.getDateFormat()));
+        options.addGroupingCondition(GroupBy.USERNAME);
+        options.addGroupingCondition(GroupBy.DAY);
+        return options;
+    }
+
+    /**
+     * Load default configuration with the memory limit of aggregation.
+     *
+     * @param memoryLimit memory limit in megabytes, 0 means no limit.
+     */
+    private static void loadConfiguration(final int memoryLimit) throws IOException {
+        File defaults = new File(folder.getRoot(), "default.cfg");
+        if (!defaults.exists()) {
+            Configuration.INSTANCE.load(defaults.getPath()); //default config is created
+        }
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(defaults)) {
+            properties.load(reader);
+        }
+        properties.setProperty("aggregation.memory.limit", String.valueOf(memoryLimit));
+        File config = new File(folder.getRoot(), "config" + memoryLimit + ".cfg");
+        try (Writer writer = new FileWriter(config)) {
+            properties.store(writer, null);
+        }
+        Configuration.INSTANCE.load(config.getPath());
+        Filter.compileAll();
+    }
+
+    private static Map<GroupingKey, BigInteger> collectGroups(final ParsingResults results) {
+        Map<GroupingKey, BigInteger> groups = new HashMap<>();
+        results.forEachGroup((key, count) -> assertNull("Group is visited twice: " + key, groups.put(key, count)));
+        assertFalse(groups.isEmpty());
+        return groups;
+    }
+}